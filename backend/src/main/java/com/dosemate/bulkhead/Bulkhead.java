@@ -0,0 +1,104 @@
+package com.dosemate.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many callers of one kind of work run at once, and with that how many pooled database
+ * connections they can hold. A caller waits up to {@code maxWaitMillis} for a slot and is rejected after
+ * that; while {@code shedding} reports true, callers are rejected straight away.
+ *
+ * Publishes {@code dosemate.bulkhead.active}, {@code dosemate.bulkhead.queued} and
+ * {@code dosemate.bulkhead.rejected}, tagged with the bulkhead name.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+    private final BooleanSupplier shedding;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Counter rejectedFull;
+    private final Counter rejectedShed;
+
+    public Bulkhead(String name, int maxConcurrent, long maxWaitMillis, BooleanSupplier shedding, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxWaitMillis = Math.max(0, maxWaitMillis);
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.shedding = shedding;
+        Gauge.builder("dosemate.bulkhead.active", permits, p -> this.maxConcurrent - p.availablePermits())
+                .tag("bulkhead", name)
+                .description("Callers currently inside the bulkhead")
+                .register(meterRegistry);
+        Gauge.builder("dosemate.bulkhead.queued", waiting, AtomicInteger::get)
+                .tag("bulkhead", name)
+                .description("Callers waiting for a slot")
+                .register(meterRegistry);
+        this.rejectedFull = Counter.builder("dosemate.bulkhead.rejected")
+                .tags("bulkhead", name, "reason", "full")
+                .description("Callers turned away")
+                .register(meterRegistry);
+        this.rejectedShed = Counter.builder("dosemate.bulkhead.rejected")
+                .tags("bulkhead", name, "reason", "shed")
+                .description("Callers turned away")
+                .register(meterRegistry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /** Runs {@code work} inside the bulkhead; throws {@link BulkheadFullException} when turned away. */
+    public <T> T call(Supplier<T> work) {
+        if (!enter()) {
+            throw new BulkheadFullException(name, "Too many " + name + " requests right now, try again shortly");
+        }
+        try {
+            return work.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** Runs {@code work} inside the bulkhead; returns false, without running it, when turned away. */
+    public boolean tryRun(Runnable work) {
+        if (!enter()) return false;
+        try {
+            work.run();
+            return true;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean enter() {
+        if (shedding.getAsBoolean()) {
+            rejectedShed.increment();
+            return false;
+        }
+        if (permits.tryAcquire()) return true;
+        waiting.incrementAndGet();
+        try {
+            if (maxWaitMillis > 0 && permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiting.decrementAndGet();
+        }
+        rejectedFull.increment();
+        return false;
+    }
+}
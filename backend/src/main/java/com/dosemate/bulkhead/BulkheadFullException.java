@@ -0,0 +1,16 @@
+package com.dosemate.bulkhead;
+
+/** Work was turned away by a {@link Bulkhead}; answered with 503 and a Retry-After header. */
+public class BulkheadFullException extends RuntimeException {
+
+    private final String bulkhead;
+
+    public BulkheadFullException(String bulkhead, String message) {
+        super(message);
+        this.bulkhead = bulkhead;
+    }
+
+    public String getBulkhead() {
+        return bulkhead;
+    }
+}
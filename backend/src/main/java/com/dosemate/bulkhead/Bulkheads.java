@@ -0,0 +1,62 @@
+package com.dosemate.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The bulkheads that keep background and reporting work from starving reminder delivery.
+ *
+ * Delivery itself is not capped: it runs on the dispatcher's own tick thread and worker pool and may use
+ * whatever connections the others leave. {@code maintenance} covers materialization, with one slot per
+ * materializer worker by default, {@code sweeper} the MISSED sweep, so a busy materializer cannot turn it
+ * away, and {@code analytics} the adherence statistics endpoints. Every thread that holds a connection takes
+ * its own slot. Together they are sized well below {@code spring.datasource.hikari.maximum-pool-size}, so
+ * delivery always finds a free connection.
+ *
+ * While the dispatcher reports a backlog, both shed their callers: statistics answer 503 and maintenance
+ * runs are skipped until delivery has caught up.
+ */
+@Component
+public class Bulkheads {
+
+    private final Bulkhead analytics;
+    private final Bulkhead maintenance;
+    private final Bulkhead sweeper;
+    private volatile boolean dispatchBacklogged;
+
+    public Bulkheads(MeterRegistry meterRegistry,
+                     @Value("${app.bulkhead.analytics.max-concurrent:4}") int analyticsMaxConcurrent,
+                     @Value("${app.bulkhead.analytics.max-wait-ms:200}") long analyticsMaxWaitMs,
+                     @Value("${app.bulkhead.maintenance.max-concurrent:${app.materializer.workers:16}}") int maintenanceMaxConcurrent,
+                     @Value("${app.bulkhead.sweeper.max-concurrent:1}") int sweeperMaxConcurrent) {
+        this.analytics = new Bulkhead("analytics", analyticsMaxConcurrent, analyticsMaxWaitMs,
+                () -> dispatchBacklogged, meterRegistry);
+        // scheduled runs come back on their own, so they never wait for a slot
+        this.maintenance = new Bulkhead("maintenance", maintenanceMaxConcurrent, 0,
+                () -> dispatchBacklogged, meterRegistry);
+        this.sweeper = new Bulkhead("sweeper", sweeperMaxConcurrent, 0,
+                () -> dispatchBacklogged, meterRegistry);
+    }
+
+    public Bulkhead analytics() {
+        return analytics;
+    }
+
+    public Bulkhead maintenance() {
+        return maintenance;
+    }
+
+    public Bulkhead sweeper() {
+        return sweeper;
+    }
+
+    /** Set by the dispatcher on every tick: true while due reminders wait behind a round still running. */
+    public void reportDispatchBacklog(boolean backlogged) {
+        this.dispatchBacklogged = backlogged;
+    }
+
+    public boolean isDispatchBacklogged() {
+        return dispatchBacklogged;
+    }
+}
@@ -0,0 +1,35 @@
+package com.dosemate.config;
+
+import com.dosemate.delivery.MailboxChannel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * External delivery channels. None has a provider yet, so each is an in-memory {@link MailboxChannel};
+ * a real adapter replaces the matching bean.
+ */
+@Configuration
+public class DeliveryChannelConfig {
+
+    private final int mailboxSize;
+
+    public DeliveryChannelConfig(@Value("${app.delivery.mailbox-size:1000}") int mailboxSize) {
+        this.mailboxSize = mailboxSize;
+    }
+
+    @Bean
+    public MailboxChannel emailChannel() {
+        return new MailboxChannel("email", mailboxSize);
+    }
+
+    @Bean
+    public MailboxChannel smsChannel() {
+        return new MailboxChannel("sms", mailboxSize);
+    }
+
+    @Bean
+    public MailboxChannel pushChannel() {
+        return new MailboxChannel("push", mailboxSize);
+    }
+}
@@ -0,0 +1,52 @@
+package com.dosemate.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Fills history.user_id and history.medicine_id for rows written before History carried them, from
+ * reminder -> medicine. Walks the table in id ranges of {@code app.history.backfill-chunk-size}, one
+ * UPDATE each, so no single statement locks a large part of it. Runs once at startup, before the
+ * history endpoints serve requests; once every row is filled it costs a single query.
+ */
+@Slf4j
+@Component
+public class HistoryOwnerBackfill {
+
+    private static final String UPDATE_RANGE =
+            "update history set " +
+            "medicine_id = (select r.medicine_id from reminders r where r.id = history.reminder_id), " +
+            "user_id = (select m.user_id from reminders r join medicines m on m.id = r.medicine_id where r.id = history.reminder_id) " +
+            "where history.id > ? and history.id <= ? and history.user_id is null and history.reminder_id is not null";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int chunkSize;
+
+    // the EntityManagerFactory is only taken to run after ddl-auto has added the columns this fills
+    public HistoryOwnerBackfill(JdbcTemplate jdbcTemplate,
+                                EntityManagerFactory entityManagerFactory,
+                                @Value("${app.history.backfill-chunk-size:5000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @PostConstruct
+    public void backfill() {
+        Map<String, Object> range = jdbcTemplate.queryForMap(
+                "select min(id) as lo, max(id) as hi from history where user_id is null and reminder_id is not null");
+        if (range.get("lo") == null) return;
+        long lo = ((Number) range.get("lo")).longValue() - 1;
+        long hi = ((Number) range.get("hi")).longValue();
+        int updated = 0;
+        for (long from = lo; from < hi; from += chunkSize) {
+            updated += jdbcTemplate.update(UPDATE_RANGE, from, Math.min(from + chunkSize, hi));
+        }
+        log.info("Backfilled user_id and medicine_id on {} history rows", updated);
+    }
+}
@@ -0,0 +1,50 @@
+package com.dosemate.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the pooled id sequences past ids that already exist. Reminder and History used IDENTITY
+ * columns before; their new sequences start at 1 and would otherwise hand out ids already in use.
+ * Runs once at startup, before any scheduled job can insert.
+ */
+@Slf4j
+@Component
+public class IdSequenceAligner {
+
+    // table -> sequence, with the allocationSize of the matching @SequenceGenerator
+    private static final String[][] SEQUENCES = {
+            {"reminders", "reminders_seq"},
+            {"history", "history_seq"}
+    };
+    private static final long ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Dialect dialect;
+
+    public IdSequenceAligner(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+
+    @PostConstruct
+    public void alignSequences() {
+        for (String[] entry : SEQUENCES) {
+            String table = entry[0];
+            String sequence = entry[1];
+            Long maxId = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+            if (maxId == null) continue;
+            // the pooled optimizer treats a sequence value as the top of a block of ALLOCATION_SIZE ids
+            Long next = jdbcTemplate.queryForObject(dialect.getSequenceSupport().getSequenceNextValString(sequence), Long.class);
+            if (next != null && next - ALLOCATION_SIZE + 1 > maxId) continue;
+            long restartWith = maxId + ALLOCATION_SIZE;
+            jdbcTemplate.execute("alter sequence " + sequence + " restart with " + restartWith);
+            log.info("Restarted {} at {} to clear existing {} ids up to {}", sequence, restartWith, table, maxId);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.dosemate.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Pool behind the {@code @Scheduled} jobs (materializing, sweeping, lease renewal, outbox polling,
+ * escalations). With several threads a slow run holds up only itself; reminder delivery is not on this
+ * pool at all but on the dispatcher's own threads. Declared as {@code taskScheduler} so it is picked over
+ * the WebSocket support's scheduler.
+ */
+@Configuration
+public class SchedulingConfig {
+
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(MeterRegistry meterRegistry,
+                                                 @Value("${app.scheduling.pool-size:4}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, poolSize));
+        scheduler.setThreadNamePrefix("scheduler-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        scheduler.initialize();
+        new ExecutorServiceMetrics(scheduler.getScheduledExecutor(), "scheduler", Tags.empty()).bindTo(meterRegistry);
+        return scheduler;
+    }
+}
@@ -5,17 +5,28 @@ import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 
+import com.dosemate.websocket.JwtHandshakeInterceptor;
 import com.dosemate.websocket.ReminderWebSocketHandler;
 
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    private final ReminderWebSocketHandler reminderWebSocketHandler;
+    private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+
+    public WebSocketConfig(ReminderWebSocketHandler reminderWebSocketHandler, JwtHandshakeInterceptor jwtHandshakeInterceptor) {
+        this.reminderWebSocketHandler = reminderWebSocketHandler;
+        this.jwtHandshakeInterceptor = jwtHandshakeInterceptor;
+    }
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(new ReminderWebSocketHandler(), "/ws/reminders")
+        registry.addHandler(reminderWebSocketHandler, "/ws/reminders")
+                .addInterceptors(jwtHandshakeInterceptor)
                 .setAllowedOrigins("*");
-        registry.addHandler(new ReminderWebSocketHandler(), "/ws/adherence")
+        registry.addHandler(reminderWebSocketHandler, "/ws/adherence")
+                .addInterceptors(jwtHandshakeInterceptor)
                 .setAllowedOrigins("*");
     }
 }
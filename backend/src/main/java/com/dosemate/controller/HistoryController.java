@@ -1,5 +1,8 @@
 package com.dosemate.controller;
 
+import com.dosemate.dto.AdherenceSeries;
+import com.dosemate.dto.HistoryCursor;
+import com.dosemate.dto.HistoryPage;
 import com.dosemate.model.History;
 import com.dosemate.model.ReminderStatus;
 import com.dosemate.service.HistoryService;
@@ -8,7 +11,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 
@@ -16,27 +21,38 @@ import java.util.Map;
 @RequestMapping("/api/history")
 public class HistoryController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final HistoryService historyService;
 
     public HistoryController(HistoryService historyService) {
         this.historyService = historyService;
     }
 
+    // Newest first, one page at a time; pass the X-Next-Cursor of a response as ?cursor= to get the next page.
+    // ?status=MISSED keeps only entries with that status.
     @GetMapping
-    public ResponseEntity<List<History>> list(Authentication authentication) {
+    public ResponseEntity<List<History>> list(
+            Authentication authentication,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
         String email = authentication.getName();
-        return ResponseEntity.ok(historyService.getUserHistory(email));
+        ReminderStatus filter = status == null || status.isBlank() ? null : ReminderStatus.valueOf(status.toUpperCase());
+        return page(historyService.getUserHistoryPage(email, filter, decode(cursor), limit));
     }
 
     @GetMapping("/date-range")
     public ResponseEntity<List<History>> getByDateRange(
             Authentication authentication,
             @RequestParam String startDate,
-            @RequestParam String endDate) {
+            @RequestParam String endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
         String email = authentication.getName();
         LocalDateTime start = LocalDateTime.parse(startDate);
         LocalDateTime end = LocalDateTime.parse(endDate);
-        return ResponseEntity.ok(historyService.getUserHistoryByDateRange(email, start, end));
+        return page(historyService.getUserHistoryByDateRange(email, start, end, decode(cursor), limit));
     }
 
     @GetMapping("/medicine/{medicineId}")
@@ -76,10 +92,48 @@ public class HistoryController {
         return ResponseEntity.ok(historyService.getAdherenceStatsByMedicine(medicineId, email));
     }
 
+    // Stats of all the user's medicines at once, for pages that would otherwise ask per medicine
+    @GetMapping("/stats/medicines")
+    public ResponseEntity<List<Map<String, Object>>> getAllMedicineStats(Authentication authentication) {
+        String email = authentication.getName();
+        return ResponseEntity.ok(historyService.getAdherenceStatsForAllMedicines(email));
+    }
+
     @GetMapping("/stats/weekly")
     public ResponseEntity<List<Map<String, Object>>> getWeeklyAdherence(Authentication authentication) {
         String email = authentication.getName();
         return ResponseEntity.ok(historyService.getWeeklyAdherence(email));
     }
-}
 
+    // e.g. ?from=2024-01-01&to=2024-12-31&granularity=month; dates are days on the user's calendar, both inclusive
+    @GetMapping("/stats/series")
+    public ResponseEntity<AdherenceSeries> getAdherenceSeries(
+            Authentication authentication,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(required = false) Long medicineId) {
+        String email = authentication.getName();
+        return ResponseEntity.ok(historyService.getAdherenceSeries(email, parseDate(from), parseDate(to),
+                AdherenceSeries.Granularity.parse(granularity), medicineId));
+    }
+
+    private static LocalDate parseDate(String date) {
+        if (date == null || date.isBlank()) return null;
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + date);
+        }
+    }
+
+    private static HistoryCursor decode(String cursor) {
+        return cursor == null || cursor.isBlank() ? null : HistoryCursor.decode(cursor);
+    }
+
+    private static ResponseEntity<List<History>> page(HistoryPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.next() != null) response.header(NEXT_CURSOR_HEADER, page.next().encode());
+        return response.body(page.items());
+    }
+}
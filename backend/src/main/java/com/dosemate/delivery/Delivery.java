@@ -0,0 +1,7 @@
+package com.dosemate.delivery;
+
+import com.dosemate.websocket.ReminderEvent;
+
+/** One fired reminder on its way to {@code userId} through a {@link DeliveryChannel}. */
+public record Delivery(Long userId, ReminderEvent event) {
+}
@@ -0,0 +1,19 @@
+package com.dosemate.delivery;
+
+import java.util.List;
+
+/**
+ * A way of getting a fired reminder in front of its user: the in-app WebSocket stream, email, SMS, push.
+ *
+ * Implementations are Spring beans and are picked up by {@link DeliveryPipeline}, which calls
+ * {@link #deliver} from the channel's own worker threads with batches of up to
+ * {@code app.delivery.<name>.batch-size}. Throwing fails the whole batch; it is retried with backoff, so a
+ * channel must tolerate seeing a delivery more than once.
+ */
+public interface DeliveryChannel {
+
+    /** Lower-case channel name, as used in {@code app.delivery.<name>.*} and in metric tags. */
+    String name();
+
+    void deliver(List<Delivery> batch) throws Exception;
+}
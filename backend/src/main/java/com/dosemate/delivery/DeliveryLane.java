@@ -0,0 +1,160 @@
+package com.dosemate.delivery;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queue and worker threads of one {@link DeliveryChannel}. Workers take up to {@code batchSize}
+ * queued deliveries at a time, wait for the rate limiter and hand the batch to the channel. A failed batch
+ * is put back after an exponential, jittered backoff until {@code maxAttempts} is reached.
+ */
+@Slf4j
+class DeliveryLane {
+
+    record Settings(int threads, int queueSize, int batchSize, double ratePerSecond, int maxAttempts, long backoffMs) {
+    }
+
+    private record Pending(Delivery delivery, int attempt, long submittedAt) {
+    }
+
+    private final DeliveryChannel channel;
+    private final Settings settings;
+    private final BlockingQueue<Pending> queue;
+    private final RateLimiter rateLimiter;
+    private final ScheduledExecutorService retries;
+    private final ExecutorService workers;
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter failed;
+    private final Counter dropped;
+    private final Timer latency;
+    private final Timer batchTime;
+    private volatile boolean running = true;
+
+    DeliveryLane(DeliveryChannel channel, Settings settings, ScheduledExecutorService retries, MeterRegistry meterRegistry) {
+        this.channel = channel;
+        this.settings = settings;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, settings.queueSize()));
+        this.rateLimiter = new RateLimiter(settings.ratePerSecond());
+        this.retries = retries;
+        String name = channel.name();
+        this.sent = Counter.builder("dosemate.delivery.sent").tag("channel", name)
+                .description("Reminders handed to the channel")
+                .register(meterRegistry);
+        this.retried = Counter.builder("dosemate.delivery.retried").tag("channel", name)
+                .description("Deliveries put back after a failed batch")
+                .register(meterRegistry);
+        this.failed = Counter.builder("dosemate.delivery.failed").tag("channel", name)
+                .description("Deliveries given up after the last attempt")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("dosemate.delivery.dropped").tag("channel", name)
+                .description("Deliveries refused because the channel queue was full")
+                .register(meterRegistry);
+        this.latency = Timer.builder("dosemate.delivery.latency").tag("channel", name)
+                .description("Time from submission until the channel accepted the reminder")
+                .register(meterRegistry);
+        this.batchTime = Timer.builder("dosemate.delivery.batch").tag("channel", name)
+                .description("Time the channel took per batch")
+                .register(meterRegistry);
+        Gauge.builder("dosemate.delivery.queue.depth", queue, BlockingQueue::size).tag("channel", name)
+                .description("Deliveries waiting for the channel")
+                .register(meterRegistry);
+
+        int threads = Math.max(1, settings.threads());
+        this.workers = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("delivery-" + name + "-"));
+        for (int i = 0; i < threads; i++) workers.execute(this::work);
+    }
+
+    String name() {
+        return channel.name();
+    }
+
+    /** Queues without blocking; returns false when the channel is backed up. */
+    boolean submit(Delivery delivery) {
+        return offer(new Pending(delivery, 1, System.nanoTime()));
+    }
+
+    int queued() {
+        return queue.size();
+    }
+
+    void shutdown() {
+        running = false;
+        workers.shutdownNow();
+    }
+
+    private boolean offer(Pending pending) {
+        if (running && queue.offer(pending)) return true;
+        dropped.increment();
+        return false;
+    }
+
+    private void work() {
+        List<Pending> batch = new ArrayList<>(settings.batchSize());
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, Math.max(1, settings.batchSize()) - 1);
+                rateLimiter.acquire(batch.size());
+                deliver(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void deliver(List<Pending> batch) {
+        List<Delivery> deliveries = new ArrayList<>(batch.size());
+        for (Pending p : batch) deliveries.add(p.delivery());
+        long start = System.nanoTime();
+        try {
+            channel.deliver(deliveries);
+        } catch (Exception e) {
+            log.warn("Delivery of {} reminder(s) through {} failed: {}", batch.size(), channel.name(), e.getMessage());
+            for (Pending p : batch) retryLater(p);
+            return;
+        }
+        long end = System.nanoTime();
+        batchTime.record(end - start, TimeUnit.NANOSECONDS);
+        sent.increment(batch.size());
+        for (Pending p : batch) latency.record(end - p.submittedAt(), TimeUnit.NANOSECONDS);
+    }
+
+    private void retryLater(Pending p) {
+        if (p.attempt() >= settings.maxAttempts()) {
+            failed.increment();
+            log.error("Giving up on reminder {} for user {} through {} after {} attempts",
+                    p.delivery().event().reminderId(), p.delivery().userId(), channel.name(), p.attempt());
+            return;
+        }
+        retried.increment();
+        long backoff = settings.backoffMs() << Math.min(p.attempt() - 1, 16);
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        Pending next = new Pending(p.delivery(), p.attempt() + 1, p.submittedAt());
+        try {
+            retries.schedule(() -> offer(next), delay, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // shutting down
+            dropped.increment();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.dosemate.delivery;
+
+import com.dosemate.websocket.ReminderEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Routes fired reminders to the {@link DeliveryChannel}s they ask for. Every channel has its own bounded
+ * queue, worker threads, batch size, rate limit and retry policy, read from {@code app.delivery.<name>.*},
+ * so a slow or failing channel backs up only itself.
+ *
+ * The in-app {@link #WEBSOCKET} channel gets every reminder. {@code Reminder.deliveryChannel} adds one
+ * more: email, sms or push; "app", "local" and empty mean in-app only.
+ */
+@Slf4j
+@Component
+public class DeliveryPipeline {
+
+    public static final String WEBSOCKET = "websocket";
+
+    private final Map<String, DeliveryLane> lanes = new HashMap<>();
+    private final ScheduledExecutorService retries =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("delivery-retry-"));
+
+    public DeliveryPipeline(List<DeliveryChannel> channels, MeterRegistry meterRegistry, Environment env) {
+        for (DeliveryChannel channel : channels) {
+            String name = channel.name();
+            String prefix = "app.delivery." + name + ".";
+            DeliveryLane.Settings settings = new DeliveryLane.Settings(
+                    env.getProperty(prefix + "threads", Integer.class, 1),
+                    env.getProperty(prefix + "queue-size", Integer.class, 10_000),
+                    env.getProperty(prefix + "batch-size", Integer.class, 50),
+                    env.getProperty(prefix + "rate-per-second", Double.class, 0.0),
+                    env.getProperty(prefix + "max-attempts", Integer.class, 5),
+                    env.getProperty(prefix + "backoff-ms", Long.class, 500L));
+            if (lanes.putIfAbsent(name, new DeliveryLane(channel, settings, retries, meterRegistry)) != null) {
+                throw new IllegalStateException("Two delivery channels are named " + name);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.values().forEach(DeliveryLane::shutdown);
+        retries.shutdownNow();
+    }
+
+    /** The extra channel a reminder asks for, or null when it is in-app only. */
+    public static String externalChannel(String deliveryChannel) {
+        if (deliveryChannel == null || deliveryChannel.isBlank()) return null;
+        String name = deliveryChannel.trim().toLowerCase(Locale.ROOT);
+        return switch (name) {
+            case "app", "local", WEBSOCKET -> null;
+            default -> name;
+        };
+    }
+
+    /** Queues the reminder on one channel; returns false when the channel is unknown or backed up. */
+    public boolean submit(String channel, Long userId, ReminderEvent event) {
+        DeliveryLane lane = lanes.get(channel);
+        if (lane == null) {
+            log.warn("No delivery channel named {} for reminder {}", channel, event.reminderId());
+            return false;
+        }
+        if (!lane.submit(new Delivery(userId, event))) {
+            log.warn("Delivery queue of {} is full, dropping reminder {}", channel, event.reminderId());
+            return false;
+        }
+        return true;
+    }
+
+    public int queued(String channel) {
+        DeliveryLane lane = lanes.get(channel);
+        return lane == null ? 0 : lane.queued();
+    }
+}
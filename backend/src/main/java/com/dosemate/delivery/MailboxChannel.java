@@ -0,0 +1,67 @@
+package com.dosemate.delivery;
+
+import com.dosemate.websocket.ReminderEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Stand-in for a channel without a provider wired up (email, SMS, push): keeps the last {@code capacity}
+ * messages in memory and logs them. Replace the bean with a real adapter to send for real.
+ */
+@Slf4j
+public class MailboxChannel implements DeliveryChannel {
+
+    public record Message(Long userId, Long reminderId, String text) {
+    }
+
+    private final String name;
+    private final int capacity;
+    private final Deque<Message> messages = new ArrayDeque<>();
+
+    public MailboxChannel(String name, int capacity) {
+        this.name = name;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public void deliver(List<Delivery> batch) {
+        List<Message> out = new ArrayList<>(batch.size());
+        for (Delivery d : batch) {
+            Message m = new Message(d.userId(), d.event().reminderId(), text(d));
+            log.info("[{}] to user {}: {}", name, m.userId(), m.text());
+            out.add(m);
+        }
+        synchronized (messages) {
+            for (Message m : out) {
+                if (messages.size() == capacity) messages.removeFirst();
+                messages.addLast(m);
+            }
+        }
+    }
+
+    /** Oldest first. */
+    public List<Message> messages() {
+        synchronized (messages) {
+            return new ArrayList<>(messages);
+        }
+    }
+
+    private static String text(Delivery d) {
+        ReminderEvent e = d.event();
+        StringBuilder sb = new StringBuilder("Time to take ").append(e.medicineName());
+        if (e.dosage() != null) {
+            sb.append(' ').append(e.dosage());
+            if (e.unit() != null) sb.append(' ').append(e.unit());
+        }
+        return sb.append(" (").append(e.scheduledAt()).append(')').toString();
+    }
+}
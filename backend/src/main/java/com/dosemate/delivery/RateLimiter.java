@@ -0,0 +1,40 @@
+package com.dosemate.delivery;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket allowing {@code permitsPerSecond} on average and bursts of up to one second's worth.
+ * A rate of zero or less means unlimited.
+ */
+class RateLimiter {
+
+    private final double permitsPerNano;
+    private final double capacity;
+    private double available;
+    private long refilledAt;
+
+    RateLimiter(double permitsPerSecond) {
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, permitsPerSecond);
+        this.available = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    boolean isUnlimited() {
+        return permitsPerNano <= 0;
+    }
+
+    /** Blocks until {@code permits} are available; a batch larger than the bucket is paid for in debt. */
+    void acquire(int permits) throws InterruptedException {
+        if (isUnlimited()) return;
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            available = Math.min(capacity, available + (now - refilledAt) * permitsPerNano);
+            refilledAt = now;
+            available -= permits;
+            waitNanos = available >= 0 ? 0 : (long) (-available / permitsPerNano);
+        }
+        if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+}
@@ -0,0 +1,36 @@
+package com.dosemate.delivery;
+
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.websocket.PatientDoseEvent;
+import com.dosemate.websocket.ReminderEvent;
+import com.dosemate.websocket.ReminderWebSocketHandler;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+/** In-app delivery: the user's own sessions on this node, plus the patient feed of their caregivers. */
+@Component
+public class WebSocketChannel implements DeliveryChannel {
+
+    private final ReminderWebSocketHandler webSocketHandler;
+
+    public WebSocketChannel(ReminderWebSocketHandler webSocketHandler) {
+        this.webSocketHandler = webSocketHandler;
+    }
+
+    @Override
+    public String name() {
+        return DeliveryPipeline.WEBSOCKET;
+    }
+
+    @Override
+    public void deliver(List<Delivery> batch) throws IOException {
+        for (Delivery d : batch) {
+            ReminderEvent event = d.event();
+            webSocketHandler.sendReminder(d.userId(), event);
+            webSocketHandler.sendToCaregivers(new PatientDoseEvent(d.userId(), event.reminderId(),
+                    event.medicineId(), event.medicineName(), ReminderStatus.TRIGGERED, event.fireAt()));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.dosemate.dto;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Adherence counts over consecutive buckets of the user's calendar, one array entry per bucket:
+ * {@code buckets[i]} is the first day of bucket i and {@code total[i]}, {@code taken[i]}, ... its counts.
+ * Buckets without history are present with zeros.
+ */
+public record AdherenceSeries(Granularity granularity, LocalDate from, LocalDate to, List<LocalDate> buckets,
+                              long[] total, long[] taken, long[] missed, double[] averageLatencySeconds) {
+
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        public static Granularity parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("granularity must be one of day, week, month");
+            }
+        }
+
+        /** First day of the bucket holding {@code day}; weeks start on Monday. */
+        public LocalDate start(LocalDate day) {
+            return switch (this) {
+                case DAY -> day;
+                case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> day.withDayOfMonth(1);
+            };
+        }
+
+        /** Index of the bucket holding {@code day}, counted from the bucket starting at {@code first}. */
+        public int index(LocalDate first, LocalDate day) {
+            return switch (this) {
+                case DAY -> (int) ChronoUnit.DAYS.between(first, day);
+                case WEEK -> (int) (ChronoUnit.DAYS.between(first, day) / 7);
+                case MONTH -> (int) ChronoUnit.MONTHS.between(YearMonth.from(first), YearMonth.from(day));
+            };
+        }
+
+        public LocalDate next(LocalDate start) {
+            return switch (this) {
+                case DAY -> start.plusDays(1);
+                case WEEK -> start.plusWeeks(1);
+                case MONTH -> start.plusMonths(1);
+            };
+        }
+    }
+}
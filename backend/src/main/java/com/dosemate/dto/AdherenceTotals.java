@@ -0,0 +1,13 @@
+package com.dosemate.dto;
+
+/** Summed rollup counts over some set of days; see {@link com.dosemate.model.AdherenceDaily}. */
+public record AdherenceTotals(Long total, Long taken, Long missed, Long latencySum, Long latencyCount) {
+
+    public double adherenceRate() {
+        return total > 0 ? taken * 100.0 / total : 0;
+    }
+
+    public double averageLatencySeconds() {
+        return latencyCount > 0 ? (double) latencySum / latencyCount : 0;
+    }
+}
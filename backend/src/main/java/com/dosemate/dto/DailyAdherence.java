@@ -0,0 +1,7 @@
+package com.dosemate.dto;
+
+import java.time.LocalDate;
+
+/** Rollup counts of one day, summed over the user's medicines. */
+public record DailyAdherence(LocalDate day, Long total, Long taken, Long missed, Long latencySum, Long latencyCount) {
+}
@@ -0,0 +1,29 @@
+package com.dosemate.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position in a user's history list, newest first: the (recordedAt, id) of the last row handed out.
+ * Travels to the client as an opaque URL-safe token in the {@code X-Next-Cursor} header.
+ */
+public record HistoryCursor(Instant recordedAt, long id) {
+
+    public String encode() {
+        String raw = recordedAt.getEpochSecond() + ":" + recordedAt.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static HistoryCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3) throw new IllegalArgumentException("Invalid cursor");
+            Instant at = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new HistoryCursor(at, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | java.time.DateTimeException e) {
+            // NumberFormatException is an IllegalArgumentException too
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
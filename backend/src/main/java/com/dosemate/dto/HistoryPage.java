@@ -0,0 +1,9 @@
+package com.dosemate.dto;
+
+import com.dosemate.model.History;
+
+import java.util.List;
+
+/** One page of history; {@code next} is null on the last page. */
+public record HistoryPage(List<History> items, HistoryCursor next) {
+}
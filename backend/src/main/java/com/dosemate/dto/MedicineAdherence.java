@@ -0,0 +1,9 @@
+package com.dosemate.dto;
+
+/** Rollup totals of one medicine; zero counts for a medicine without history. */
+public record MedicineAdherence(Long medicineId, String name, Long total, Long taken, Long missed) {
+
+    public double adherenceRate() {
+        return total > 0 ? taken * 100.0 / total : 0;
+    }
+}
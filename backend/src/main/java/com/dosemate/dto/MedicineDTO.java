@@ -26,6 +26,7 @@ public class MedicineDTO {
     private List<String> reminderTimes;
     private Integer stock; // current quantity
     private Integer refillThreshold; // low stock warning
+    private Integer escalateAfterMinutes; // caregiver alert delay for untaken doses; null = default, 0 = never
     private List<String> imageUrls; // medicine images
     private Set<String> tags; // e.g., antibiotic, painkiller, vitamin
     private String notes; // prescription notes
@@ -46,6 +47,7 @@ public class MedicineDTO {
         dto.setReminderTimes(medicine.getReminderTimes());
         dto.setStock(medicine.getStock());
         dto.setRefillThreshold(medicine.getRefillThreshold());
+        dto.setEscalateAfterMinutes(medicine.getEscalateAfterMinutes());
         dto.setImageUrls(medicine.getImageUrls());
         dto.setTags(medicine.getTags());
         dto.setNotes(medicine.getNotes());
@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 
 @Data
@@ -16,6 +17,7 @@ public class ReminderDTO {
     private Long medicineId;
     private String medicineName;
     private LocalDateTime scheduledAt;
+    private Instant fireAt; // UTC instant of scheduledAt in zoneId
     private ReminderStatus status;
     private String repeatPattern; // daily, weekly, monthly, custom
     private String zoneId; // timezone
@@ -29,6 +31,7 @@ public class ReminderDTO {
         dto.setMedicineId(reminder.getMedicine().getId());
         dto.setMedicineName(reminder.getMedicine().getName());
         dto.setScheduledAt(reminder.getScheduledAt());
+        dto.setFireAt(reminder.getFireAt());
         dto.setStatus(reminder.getStatus());
         dto.setRepeatPattern(reminder.getRepeatPattern());
         dto.setZoneId(reminder.getZoneId());
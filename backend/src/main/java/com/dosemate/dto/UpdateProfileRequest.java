@@ -15,4 +15,5 @@ public class UpdateProfileRequest {
     private Integer age;
     private String bio;
     private String profilePictureUrl;
+    private String timeZone;
 }
@@ -23,6 +23,7 @@ public class UserResponse {
     private String specialization;
     private Integer yearsExperience;
     private String role;
+    private String timeZone;
 
     public static UserResponse fromEntity(User user) {
         return new UserResponse(
@@ -39,7 +40,8 @@ public class UserResponse {
                 user.getLicenseNumber(),
                 user.getSpecialization(),
                 user.getYearsExperience(),
-                user.getRole() != null ? user.getRole().toString() : null
+                user.getRole() != null ? user.getRole().toString() : null,
+                user.getTimeZone()
         );
     }
 }
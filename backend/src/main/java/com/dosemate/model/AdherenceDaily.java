@@ -0,0 +1,52 @@
+package com.dosemate.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Running counts of one user's history rows for one medicine on one day of the user's calendar.
+@Entity
+@Table(name = "adherence_daily", indexes = @Index(name = "idx_adherence_daily_user_day", columnList = "user_id, local_day"))
+@IdClass(AdherenceDaily.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdherenceDaily {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "medicine_id")
+    private Long medicineId;
+
+    @Id
+    @Column(name = "local_day")
+    private LocalDate day; // in the user's time zone when the row was counted
+
+    private long total; // history rows of any status
+
+    private long taken;
+
+    private long missed;
+
+    @Column(name = "latency_sum")
+    private long latencySum; // seconds, over TAKEN rows that carry a latency
+
+    @Column(name = "latency_count")
+    private long latencyCount;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long userId;
+        private Long medicineId;
+        private LocalDate day;
+    }
+}
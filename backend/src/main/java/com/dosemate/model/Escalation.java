@@ -0,0 +1,32 @@
+package com.dosemate.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// A fired dose that has not been taken yet; caregivers are alerted at dueAt unless it is taken first.
+@Entity
+@Table(name = "escalations", indexes = @Index(name = "idx_escalations_user_id", columnList = "user_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class Escalation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "escalations_seq")
+    @SequenceGenerator(name = "escalations_seq", sequenceName = "escalations_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "reminder_id", nullable = false, unique = true)
+    private Long reminderId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId; // the patient; escalations are partitioned by user like reminders
+
+    @Column(nullable = false)
+    private int stage; // alerts already sent
+
+    @Column(name = "due_at", nullable = false)
+    private Instant dueAt; // when the next alert goes out
+}
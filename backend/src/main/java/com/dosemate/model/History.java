@@ -6,20 +6,35 @@ import lombok.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "history")
+@Table(name = "history",
+        indexes = {
+                @Index(name = "idx_history_user_recorded_at", columnList = "user_id, recorded_at"),
+                @Index(name = "idx_history_medicine_recorded_at", columnList = "medicine_id, recorded_at"),
+                @Index(name = "idx_history_user_status_recorded_at", columnList = "user_id, status, recorded_at")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 public class History {
+    // pooled sequence instead of IDENTITY so inserts can be batched; ids are handed out 50 at a time
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "history_seq")
+    @SequenceGenerator(name = "history_seq", sequenceName = "history_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "reminder_id")
     private Reminder reminder;
 
+    // copied from reminder -> medicine -> user when the row is written, so per-user and per-medicine reads
+    // hit the indexes above instead of joining through reminders and medicines
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "medicine_id")
+    private Long medicineId;
+
     @Enumerated(EnumType.STRING)
     private ReminderStatus status;
 
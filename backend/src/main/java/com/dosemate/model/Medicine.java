@@ -3,11 +3,12 @@ package com.dosemate.model;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 
 @Entity
-@Table(name = "medicines")
+@Table(name = "medicines", indexes = @Index(name = "idx_medicines_next_fire_at_utc", columnList = "next_fire_at_utc"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -53,8 +54,13 @@ public class Medicine {
 
     private String route; // oral, sublingual, etc.
 
+    private Integer escalateAfterMinutes; // alert caregivers when a dose is not taken this long after firing; null = default, 0 = never
+
     private boolean active = true;
 
+    @Column(name = "next_fire_at_utc")
+    private Instant nextFireAt; // next dose not yet materialized as a reminder; null when nothing is scheduled
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
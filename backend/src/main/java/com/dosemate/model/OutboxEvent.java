@@ -0,0 +1,41 @@
+package com.dosemate.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// A WebSocket event written in the same transaction as the change it reports; relayed after commit.
+@Entity
+@Table(name = "outbox_events",
+        indexes = {
+                @Index(name = "idx_outbox_events_created_at", columnList = "created_at, id"),
+                @Index(name = "idx_outbox_events_pending_channel", columnList = "pending_channel, created_at")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_events_seq")
+    @SequenceGenerator(name = "outbox_events_seq", sequenceName = "outbox_events_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId; // user the event belongs to; caregivers are looked up when it is relayed
+
+    @Column(nullable = false, length = 32)
+    private String type; // REMINDER, INTAKE_RECORDED, DOSE_ESCALATION
+
+    @Column(nullable = false, length = 2000)
+    private String payload; // the event as JSON
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    // external channel (email, SMS, push) a REMINDER still has to be handed to; cleared once the node owning
+    // the user's partition has done so
+    @Column(name = "pending_channel", length = 32)
+    private String pendingChannel;
+}
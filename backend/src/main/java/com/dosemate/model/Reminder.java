@@ -7,21 +7,31 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "reminders")
+@Table(name = "reminders",
+        uniqueConstraints = @UniqueConstraint(name = "uk_reminders_medicine_scheduled_at", columnNames = {"medicine_id", "scheduled_at"}),
+        indexes = {
+                @Index(name = "idx_reminders_status_fire_at", columnList = "status, fire_at"),
+                @Index(name = "idx_reminders_updated_at", columnList = "updated_at"),
+                @Index(name = "idx_reminders_claim_token", columnList = "claim_token")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 public class Reminder {
+    // pooled sequence instead of IDENTITY so inserts can be batched; ids are handed out 50 at a time
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reminders_seq")
+    @SequenceGenerator(name = "reminders_seq", sequenceName = "reminders_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "medicine_id")
     private Medicine medicine;
 
-    private LocalDateTime scheduledAt;
+    private LocalDateTime scheduledAt; // wall-clock time in zoneId, as the user sees it
+
+    private Instant fireAt; // the same moment in UTC; what the dispatcher and sweeper scan
 
     private String zoneId; // timezone id for scheduling
 
@@ -35,4 +45,16 @@ public class Reminder {
     private Integer snoozeCount = 0;
 
     private Instant createdAt = Instant.now();
+
+    private Instant updatedAt; // lets scheduler nodes pick up changes made through other nodes
+
+    private String claimToken; // set while a dispatcher worker is delivering the reminder
+
+    private Instant claimedUntil; // the claim lapses after this and the reminder can be claimed again
+
+    @PrePersist
+    @PreUpdate
+    protected void onWrite() {
+        this.updatedAt = Instant.now();
+    }
 }
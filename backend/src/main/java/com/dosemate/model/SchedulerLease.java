@@ -0,0 +1,21 @@
+package com.dosemate.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "scheduler_leases")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchedulerLease {
+    @Id
+    private Integer partitionId;
+
+    private String owner; // node id holding the partition, null when free
+
+    private Instant expiresAt;
+}
@@ -0,0 +1,19 @@
+package com.dosemate.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "scheduler_nodes")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchedulerNode {
+    @Id
+    private String nodeId;
+
+    private Instant lastSeenAt; // heartbeat, refreshed on every lease renewal
+}
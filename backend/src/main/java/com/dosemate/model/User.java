@@ -35,6 +35,8 @@ public class User {
     private String profilePictureUrl;
 
     private String bio;
+
+    private String timeZone; // IANA zone id, e.g. Europe/Berlin; schedules are expanded in it (server zone when null)
     // Caregiver-specific fields (optional)
     private String organization;
     private String licenseNumber;
@@ -0,0 +1,84 @@
+package com.dosemate.repository;
+
+import com.dosemate.dto.AdherenceTotals;
+import com.dosemate.dto.DailyAdherence;
+import com.dosemate.dto.MedicineAdherence;
+import com.dosemate.model.AdherenceDaily;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface AdherenceDailyRepository extends JpaRepository<AdherenceDaily, AdherenceDaily.Key> {
+
+	@Query("select new com.dosemate.dto.AdherenceTotals(coalesce(sum(a.total), 0L), coalesce(sum(a.taken), 0L), " +
+			"coalesce(sum(a.missed), 0L), coalesce(sum(a.latencySum), 0L), coalesce(sum(a.latencyCount), 0L)) " +
+			"from AdherenceDaily a where a.userId = :userId")
+	AdherenceTotals totalsForUser(@Param("userId") Long userId);
+
+	@Query("select new com.dosemate.dto.AdherenceTotals(coalesce(sum(a.total), 0L), coalesce(sum(a.taken), 0L), " +
+			"coalesce(sum(a.missed), 0L), coalesce(sum(a.latencySum), 0L), coalesce(sum(a.latencyCount), 0L)) " +
+			"from AdherenceDaily a where a.userId = :userId and a.medicineId = :medicineId")
+	AdherenceTotals totalsForMedicine(@Param("userId") Long userId, @Param("medicineId") Long medicineId);
+
+	// Every medicine of the user with its summed counts, in one grouped statement.
+	@Query("select new com.dosemate.dto.MedicineAdherence(m.id, m.name, coalesce(sum(a.total), 0L), " +
+			"coalesce(sum(a.taken), 0L), coalesce(sum(a.missed), 0L)) " +
+			"from Medicine m left join AdherenceDaily a on a.medicineId = m.id and a.userId = :userId " +
+			"where m.user.id = :userId group by m.id, m.name order by m.name, m.id")
+	List<MedicineAdherence> totalsByMedicine(@Param("userId") Long userId);
+
+	// Days in [from, to] that have rows, oldest first.
+	@Query("select new com.dosemate.dto.DailyAdherence(a.day, sum(a.total), sum(a.taken), sum(a.missed), " +
+			"sum(a.latencySum), sum(a.latencyCount)) " +
+			"from AdherenceDaily a where a.userId = :userId and a.day >= :from and a.day <= :to " +
+			"group by a.day order by a.day")
+	List<DailyAdherence> dailyForUser(@Param("userId") Long userId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+	@Query("select new com.dosemate.dto.DailyAdherence(a.day, a.total, a.taken, a.missed, a.latencySum, a.latencyCount) " +
+			"from AdherenceDaily a where a.userId = :userId and a.medicineId = :medicineId " +
+			"and a.day >= :from and a.day <= :to order by a.day")
+	List<DailyAdherence> dailyForMedicine(@Param("userId") Long userId, @Param("medicineId") Long medicineId,
+										  @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+	@Modifying
+	@Query("delete from AdherenceDaily a where a.userId = :userId")
+	int deleteByUserId(@Param("userId") Long userId);
+
+	@Modifying
+	@Query("delete from AdherenceDaily a where a.userId = :userId and a.medicineId = :medicineId")
+	int deleteByUserIdAndMedicineId(@Param("userId") Long userId, @Param("medicineId") Long medicineId);
+
+	// Adds to the counts of one (user, medicine, day), creating the row when missing. PostgreSQL resolves
+	// concurrent first writers through the primary key.
+	@Modifying
+	@Query(nativeQuery = true, value = "insert into adherence_daily " +
+			"(user_id, medicine_id, local_day, total, taken, missed, latency_sum, latency_count) " +
+			"values (:userId, :medicineId, :day, :total, :taken, :missed, :latencySum, :latencyCount) " +
+			"on conflict (user_id, medicine_id, local_day) do update set " +
+			"total = adherence_daily.total + excluded.total, taken = adherence_daily.taken + excluded.taken, " +
+			"missed = adherence_daily.missed + excluded.missed, " +
+			"latency_sum = adherence_daily.latency_sum + excluded.latency_sum, " +
+			"latency_count = adherence_daily.latency_count + excluded.latency_count")
+	int addOnConflict(@Param("userId") Long userId, @Param("medicineId") Long medicineId, @Param("day") LocalDate day,
+					  @Param("total") long total, @Param("taken") long taken, @Param("missed") long missed,
+					  @Param("latencySum") long latencySum, @Param("latencyCount") long latencyCount);
+
+	// The same through standard MERGE, for databases without ON CONFLICT (H2).
+	@Modifying
+	@Query(nativeQuery = true, value = "merge into adherence_daily a using (select cast(:userId as bigint) as user_id, " +
+			"cast(:medicineId as bigint) as medicine_id, cast(:day as date) as local_day) as s " +
+			"on a.user_id = s.user_id and a.medicine_id = s.medicine_id and a.local_day = s.local_day " +
+			"when matched then update set total = a.total + :total, taken = a.taken + :taken, missed = a.missed + :missed, " +
+			"latency_sum = a.latency_sum + :latencySum, latency_count = a.latency_count + :latencyCount " +
+			"when not matched then insert (user_id, medicine_id, local_day, total, taken, missed, latency_sum, latency_count) " +
+			"values (s.user_id, s.medicine_id, s.local_day, :total, :taken, :missed, :latencySum, :latencyCount)")
+	int addMerge(@Param("userId") Long userId, @Param("medicineId") Long medicineId, @Param("day") LocalDate day,
+				 @Param("total") long total, @Param("taken") long taken, @Param("missed") long missed,
+				 @Param("latencySum") long latencySum, @Param("latencyCount") long latencyCount);
+}
@@ -4,6 +4,8 @@ import com.dosemate.model.CaregiverRelation;
 import com.dosemate.model.CaregiverStatus;
 import com.dosemate.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -18,4 +20,8 @@ public interface CaregiverRelationRepository extends JpaRepository<CaregiverRela
     Optional<CaregiverRelation> findByInviteCode(String inviteCode);
     Optional<CaregiverRelation> findByCaregiverAndPatient(User caregiver, User patient);
     List<CaregiverRelation> findByCaregiverAndStatusOrderByCreatedAtDesc(User caregiver, CaregiverStatus status);
+
+    // (patientId, caregiverId) pairs; feeds the in-memory caregiver index without loading users
+    @Query("select r.patient.id, r.caregiver.id from CaregiverRelation r where r.status = :status")
+    List<Object[]> findPatientCaregiverIdsByStatus(@Param("status") CaregiverStatus status);
 }
@@ -0,0 +1,32 @@
+package com.dosemate.repository;
+
+import com.dosemate.model.Escalation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EscalationRepository extends JpaRepository<Escalation, Long> {
+
+    Optional<Escalation> findByReminderId(Long reminderId);
+
+    List<Escalation> findByReminderIdIn(Collection<Long> reminderIds);
+
+    // Next page in id order of escalations of users in the given partitions.
+    @Query("select e from Escalation e where e.id > :afterId and mod(e.userId, :partitions) in :owned order by e.id")
+    List<Escalation> findPageInPartitions(@Param("afterId") Long afterId,
+                                          @Param("partitions") int partitions,
+                                          @Param("owned") Collection<Integer> owned,
+                                          Pageable pageable);
+
+    @Modifying
+    @Query("delete from Escalation e where e.reminderId = :reminderId")
+    int deleteByReminderId(@Param("reminderId") Long reminderId);
+}
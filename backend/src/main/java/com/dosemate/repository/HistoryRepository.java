@@ -1,15 +1,67 @@
 package com.dosemate.repository;
 
 import com.dosemate.model.History;
-import com.dosemate.model.User;
+import com.dosemate.model.ReminderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface HistoryRepository extends JpaRepository<History, Long> {
 	void deleteAllByReminder(com.dosemate.model.Reminder reminder);
-	List<History> findByReminder_Medicine_User(User user);
-	List<History> findByReminder_Medicine_UserOrderByRecordedAtDesc(User user);
+	Optional<History> findFirstByUserIdOrderByRecordedAtDesc(Long userId);
+
+	// One page of a user's history, newest first, in [from, beforeAt) and strictly behind the
+	// (beforeAt, beforeId) keyset cursor. The reminder and medicine come with it for serialization.
+	@Query("select h from History h join fetch h.reminder r join fetch r.medicine m " +
+			"where h.userId = :userId and h.recordedAt >= :from " +
+			"and (h.recordedAt < :beforeAt or (h.recordedAt = :beforeAt and h.id < :beforeId)) " +
+			"order by h.recordedAt desc, h.id desc")
+	List<History> findPageForUser(@Param("userId") Long userId,
+								  @Param("from") Instant from,
+								  @Param("beforeAt") Instant beforeAt,
+								  @Param("beforeId") Long beforeId,
+								  Pageable page);
+
+	// The same page restricted to one status, e.g. the user's latest missed doses.
+	@Query("select h from History h join fetch h.reminder r join fetch r.medicine m " +
+			"where h.userId = :userId and h.status = :status and h.recordedAt >= :from " +
+			"and (h.recordedAt < :beforeAt or (h.recordedAt = :beforeAt and h.id < :beforeId)) " +
+			"order by h.recordedAt desc, h.id desc")
+	List<History> findPageForUserWithStatus(@Param("userId") Long userId,
+											@Param("status") ReminderStatus status,
+											@Param("from") Instant from,
+											@Param("beforeAt") Instant beforeAt,
+											@Param("beforeId") Long beforeId,
+											Pageable page);
+
+	@Query("select h from History h join fetch h.reminder r join fetch r.medicine m " +
+			"where h.userId = :userId order by h.recordedAt desc, h.id desc")
+	List<History> findAllForUser(@Param("userId") Long userId);
+
+	@Query("select h from History h join fetch h.reminder r join fetch r.medicine m " +
+			"where h.medicineId = :medicineId and h.userId = :userId order by h.recordedAt desc, h.id desc")
+	List<History> findAllForMedicine(@Param("medicineId") Long medicineId, @Param("userId") Long userId);
+
+	// rows of [medicineId, recordedAt, status, latencySeconds], for rebuilding the adherence rollup
+	@Query("select h.medicineId, h.recordedAt, h.status, h.latencySeconds from History h " +
+			"where h.userId = :userId and h.medicineId is not null")
+	List<Object[]> findRollupInputs(@Param("userId") Long userId);
+
+	Optional<History> findFirstByOrderByIdAsc();
+
+	// Writes one AUTO/MISSED row per reminder in a single INSERT ... SELECT.
+	@Modifying
+	@Query("insert into History (reminder, userId, medicineId, status, recordedAt, source) " +
+			"select r, m.user.id, m.id, com.dosemate.model.ReminderStatus.MISSED, :recordedAt, 'AUTO' " +
+			"from Reminder r join r.medicine m where r.id in :reminderIds")
+	int insertMissed(@Param("reminderIds") Collection<Long> reminderIds, @Param("recordedAt") Instant recordedAt);
 }
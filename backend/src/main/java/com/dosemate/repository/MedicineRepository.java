@@ -2,12 +2,28 @@ package com.dosemate.repository;
 
 import com.dosemate.model.Medicine;
 import com.dosemate.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface MedicineRepository extends JpaRepository<Medicine, Long> {
     List<Medicine> findByUser(User user);
+    // Ids of medicines due by :time after the :afterId checkpoint, in id order, for users in the given partitions.
+    @Query("select m.id from Medicine m where m.nextFireAt <= :time and m.id > :afterId " +
+            "and mod(m.user.id, :partitions) in :owned order by m.id")
+    List<Long> findDueIdsInPartitions(@Param("time") Instant time,
+                                      @Param("afterId") Long afterId,
+                                      @Param("partitions") int partitions,
+                                      @Param("owned") Collection<Integer> owned,
+                                      Pageable pageable);
+    @Query("select m from Medicine m join fetch m.user where m.id in :ids and m.nextFireAt <= :time")
+    List<Medicine> findDueByIdIn(@Param("ids") Collection<Long> ids, @Param("time") Instant time);
+    List<Medicine> findByActiveTrueAndNextFireAtIsNull();
 }
@@ -0,0 +1,39 @@
+package com.dosemate.repository;
+
+import com.dosemate.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Next page in (createdAt, id) order after the given position.
+    @Query("select e from OutboxEvent e where e.createdAt > :createdAt or (e.createdAt = :createdAt and e.id > :id) " +
+            "order by e.createdAt, e.id")
+    List<OutboxEvent> findPageAfter(@Param("createdAt") Instant createdAt, @Param("id") Long id, Pageable pageable);
+
+    // Next page of events still waiting for their external channel, among users of the given partitions.
+    @Query("select e from OutboxEvent e where e.pendingChannel is not null and mod(e.userId, :partitions) in :owned " +
+            "and (e.createdAt > :createdAt or (e.createdAt = :createdAt and e.id > :id)) order by e.createdAt, e.id")
+    List<OutboxEvent> findPendingExternalAfter(@Param("partitions") int partitions,
+                                               @Param("owned") Collection<Integer> owned,
+                                               @Param("createdAt") Instant createdAt,
+                                               @Param("id") Long id,
+                                               Pageable pageable);
+
+    @Modifying
+    @Query("update OutboxEvent e set e.pendingChannel = null where e.id in :ids")
+    int markExternalRelayed(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from OutboxEvent e where e.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") Instant cutoff);
+}
@@ -4,11 +4,22 @@ import com.dosemate.model.Reminder;
 import com.dosemate.model.ReminderStatus;
 import com.dosemate.model.Medicine;
 import com.dosemate.model.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Repository
 public interface ReminderRepository extends JpaRepository<Reminder, Long> {
@@ -18,4 +29,138 @@ public interface ReminderRepository extends JpaRepository<Reminder, Long> {
     List<Reminder> findByScheduledAtBeforeAndStatus(LocalDateTime time, ReminderStatus status);
     List<Reminder> findByMedicine_User(User user);
     List<Reminder> findByMedicine_UserAndStatus(User user, ReminderStatus status);
+    boolean existsByMedicineAndScheduledAt(Medicine medicine, LocalDateTime scheduledAt);
+
+    // Partition-scoped lookups: a user belongs to partition mod(user_id, partitions).
+    @Query("select r from Reminder r where r.status = :status and r.fireAt < :to " +
+            "and mod(r.medicine.user.id, :partitions) in :owned")
+    List<Reminder> findByStatusAndFireAtBeforeInPartitions(@Param("status") ReminderStatus status,
+                                                          @Param("to") Instant to,
+                                                          @Param("partitions") int partitions,
+                                                          @Param("owned") Collection<Integer> owned);
+
+    @Query("select r from Reminder r where r.status = :status and r.fireAt >= :from and r.fireAt < :to " +
+            "and mod(r.medicine.user.id, :partitions) in :owned")
+    List<Reminder> findByStatusAndFireAtBetweenInPartitions(@Param("status") ReminderStatus status,
+                                                           @Param("from") Instant from,
+                                                           @Param("to") Instant to,
+                                                           @Param("partitions") int partitions,
+                                                           @Param("owned") Collection<Integer> owned);
+
+    // Reminders written before fireAt existed; filled in at startup.
+    List<Reminder> findByFireAtIsNullAndScheduledAtIsNotNull(Pageable page);
+
+    @Query("select r from Reminder r where r.updatedAt > :since and mod(r.medicine.user.id, :partitions) in :owned")
+    List<Reminder> findUpdatedSinceInPartitions(@Param("since") Instant since,
+                                                @Param("partitions") int partitions,
+                                                @Param("owned") Collection<Integer> owned);
+
+    // Oldest reminders still open past the deadline; rows are locked until the sweeping transaction ends.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r.id from Reminder r where r.status in :statuses and r.fireAt < :deadline " +
+            "and mod(r.medicine.user.id, :partitions) in :owned order by r.fireAt")
+    List<Long> findOverdueIds(@Param("statuses") Collection<ReminderStatus> statuses,
+                              @Param("deadline") Instant deadline,
+                              @Param("partitions") int partitions,
+                              @Param("owned") Collection<Integer> owned,
+                              Pageable page);
+
+    // Claim queue used by the dispatcher: due PENDING reminders whose claim is absent or lapsed.
+    @Query("select r.id from Reminder r where r.status = com.dosemate.model.ReminderStatus.PENDING " +
+            "and r.fireAt <= :dueBy and (r.claimedUntil is null or r.claimedUntil < :now) " +
+            "and mod(r.medicine.user.id, :partitions) in :owned order by r.fireAt")
+    List<Long> findClaimableIds(@Param("dueBy") Instant dueBy,
+                                @Param("now") Instant now,
+                                @Param("partitions") int partitions,
+                                @Param("owned") Collection<Integer> owned,
+                                Pageable page);
+
+    // Optimistic claim: rows claimed by someone else since findClaimableIds no longer match.
+    @Modifying
+    @Query("update Reminder r set r.claimToken = :token, r.claimedUntil = :until " +
+            "where r.id in :ids and r.status = com.dosemate.model.ReminderStatus.PENDING " +
+            "and (r.claimedUntil is null or r.claimedUntil < :now)")
+    int claimIds(@Param("ids") Collection<Long> ids,
+                 @Param("token") String token,
+                 @Param("until") Instant until,
+                 @Param("now") Instant now);
+
+    // PostgreSQL claim: concurrent claimers skip each other's locked rows instead of waiting on them.
+    @Modifying
+    @Query(nativeQuery = true, value = "update reminders set claim_token = :token, claimed_until = :until " +
+            "where id in (select r.id from reminders r join medicines m on m.id = r.medicine_id " +
+            "where r.status = 'PENDING' and r.fire_at <= :dueBy " +
+            "and (r.claimed_until is null or r.claimed_until < :now) " +
+            "and mod(m.user_id, :partitions) in (:owned) " +
+            "order by r.fire_at limit :limit for update of r skip locked)")
+    int claimDueSkipLocked(@Param("token") String token,
+                           @Param("until") Instant until,
+                           @Param("dueBy") Instant dueBy,
+                           @Param("now") Instant now,
+                           @Param("partitions") int partitions,
+                           @Param("owned") Collection<Integer> owned,
+                           @Param("limit") int limit);
+
+    @Query("select r from Reminder r join fetch r.medicine where r.claimToken = :token")
+    List<Reminder> findByClaimToken(@Param("token") String token);
+
+    @Query("select r from Reminder r join fetch r.medicine where r.id in :ids")
+    List<Reminder> findWithMedicineByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Acknowledges a delivered reminder; does nothing if the claim lapsed and was taken over meanwhile,
+    // or if the reminder was settled under the claim, e.g. swept as MISSED.
+    @Modifying
+    @Query("update Reminder r set r.status = :status, r.claimToken = null, r.claimedUntil = null, r.updatedAt = :now " +
+            "where r.id = :id and r.claimToken = :token and r.status = com.dosemate.model.ReminderStatus.PENDING")
+    int acknowledgeClaim(@Param("id") Long id,
+                         @Param("token") String token,
+                         @Param("status") ReminderStatus status,
+                         @Param("now") Instant now);
+
+    // Drops any claim as well, so a dispatcher still holding one can no longer acknowledge the reminder.
+    @Modifying
+    @Query("update Reminder r set r.status = com.dosemate.model.ReminderStatus.MISSED, " +
+            "r.claimToken = null, r.claimedUntil = null, r.updatedAt = :now " +
+            "where r.id in :ids and r.status in :statuses")
+    int markMissed(@Param("ids") Collection<Long> ids,
+                   @Param("statuses") Collection<ReminderStatus> statuses,
+                   @Param("now") Instant now);
+
+    // rows of [medicineId, scheduledAt]
+    @Query("select r.medicine.id, r.scheduledAt from Reminder r " +
+            "where r.medicine.id in :medicineIds and r.scheduledAt between :from and :to")
+    List<Object[]> findSlots(@Param("medicineIds") Collection<Long> medicineIds,
+                         @Param("from") LocalDateTime from,
+                         @Param("to") LocalDateTime to);
+
+    /**
+     * Saves the reminders whose (medicine, scheduledAt) slot is still free and returns them. The whole
+     * batch is checked with one query. A concurrent writer can still take a slot before this flushes; the
+     * unique key then fails the transaction with a DataIntegrityViolationException. Callers either treat
+     * the slot as taken or redo the work in a new transaction, where the check sees the committed row.
+     */
+    default List<Reminder> saveAllIfAbsent(List<Reminder> candidates) {
+        if (candidates.isEmpty()) return candidates;
+        Set<Long> medicineIds = new HashSet<>();
+        LocalDateTime from = null;
+        LocalDateTime to = null;
+        for (Reminder r : candidates) {
+            medicineIds.add(r.getMedicine().getId());
+            if (from == null || r.getScheduledAt().isBefore(from)) from = r.getScheduledAt();
+            if (to == null || r.getScheduledAt().isAfter(to)) to = r.getScheduledAt();
+        }
+
+        Set<Slot> taken = new HashSet<>();
+        for (Object[] row : findSlots(medicineIds, from, to)) {
+            taken.add(new Slot((Long) row[0], (LocalDateTime) row[1]));
+        }
+        List<Reminder> fresh = new ArrayList<>();
+        for (Reminder r : candidates) {
+            if (taken.add(new Slot(r.getMedicine().getId(), r.getScheduledAt()))) fresh.add(r);
+        }
+        return fresh.isEmpty() ? fresh : saveAll(fresh);
+    }
+
+    record Slot(Long medicineId, LocalDateTime scheduledAt) {
+    }
 }
@@ -0,0 +1,27 @@
+package com.dosemate.repository;
+
+import com.dosemate.model.SchedulerLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLease, Integer> {
+
+    // Renews a lease the node already holds or takes over one that is free or expired.
+    @Modifying
+    @Query("update SchedulerLease l set l.owner = :owner, l.expiresAt = :expiresAt " +
+            "where l.partitionId = :partitionId and (l.owner = :owner or l.owner is null or l.expiresAt < :now)")
+    int tryAcquire(@Param("partitionId") Integer partitionId,
+                   @Param("owner") String owner,
+                   @Param("expiresAt") Instant expiresAt,
+                   @Param("now") Instant now);
+
+    @Modifying
+    @Query("update SchedulerLease l set l.owner = null, l.expiresAt = null where l.partitionId = :partitionId and l.owner = :owner")
+    int release(@Param("partitionId") Integer partitionId, @Param("owner") String owner);
+}
@@ -0,0 +1,13 @@
+package com.dosemate.repository;
+
+import com.dosemate.model.SchedulerNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface SchedulerNodeRepository extends JpaRepository<SchedulerNode, String> {
+    long countByLastSeenAtAfter(Instant time);
+    void deleteByLastSeenAtBefore(Instant time);
+}
@@ -0,0 +1,342 @@
+package com.dosemate.scheduling;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * A medicine or reminder schedule reduced to a few primitives: a day-of-week bitset, a day-of-month
+ * bitset, a sorted minute-of-day array and an inclusive epoch-day interval.
+ *
+ * The primitive API works on local epoch minutes (minutes since 1970-01-01T00:00 on the wall clock)
+ * and does not allocate. The schedule source can be one of the Medicine frequencies (DAILY, WEEKLY,
+ * CUSTOM), the Reminder repeat keywords (daily, weekly, monthly), an RFC 5545 RRULE with FREQ=DAILY,
+ * WEEKLY or MONTHLY and the BYDAY / BYMONTHDAY / BYHOUR / BYMINUTE / UNTIL parts, or a five-field cron
+ * expression. Anything else is rejected with an IllegalArgumentException.
+ */
+public final class CompiledSchedule {
+
+    /** Returned by {@link #nextOccurrence(long)} when the schedule never fires again. */
+    public static final long NONE = Long.MIN_VALUE;
+
+    public static final CompiledSchedule NEVER = new CompiledSchedule(0, 0, new int[0], Long.MIN_VALUE, Long.MIN_VALUE);
+
+    private static final int MINUTES_PER_DAY = 1440;
+    private static final int ALL_DAYS_OF_WEEK = 0x7F;
+    private static final int ALL_DAYS_OF_MONTH = 0xFFFFFFFE; // bits 1..31
+    // long enough to reach a Feb 29 or a 31st that also has to fall on a given weekday
+    private static final int MAX_SCAN_DAYS = 4 * 366 + 7;
+    private static final DateTimeFormatter RRULE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final int daysOfWeek;   // bit 0 = Monday ... bit 6 = Sunday
+    private final int daysOfMonth;  // bit n = day n of the month
+    private final int[] minutes;    // sorted, distinct minutes of the day
+    private final long firstDay;    // inclusive epoch day
+    private final long lastDay;     // inclusive epoch day
+    private final boolean eitherDay; // a day fires when it matches either day set (cron) instead of both
+
+    private CompiledSchedule(int daysOfWeek, int daysOfMonth, int[] minutes, long firstDay, long lastDay) {
+        this(daysOfWeek, daysOfMonth, minutes, firstDay, lastDay, false);
+    }
+
+    private CompiledSchedule(int daysOfWeek, int daysOfMonth, int[] minutes, long firstDay, long lastDay, boolean eitherDay) {
+        this.daysOfWeek = daysOfWeek;
+        this.daysOfMonth = daysOfMonth;
+        this.minutes = minutes;
+        this.firstDay = firstDay;
+        this.lastDay = lastDay;
+        this.eitherDay = eitherDay;
+    }
+
+    /**
+     * Compiles a schedule rule with its "HH:mm" times and optional date bounds. Times are ignored when
+     * the rule carries its own (cron, or an RRULE with BYHOUR).
+     */
+    public static CompiledSchedule compile(String rule, List<String> times, LocalDate startDate, LocalDate endDate) {
+        int[] minutes = parseTimes(times);
+        long first = startDate != null ? startDate.toEpochDay() : Long.MIN_VALUE;
+        long last = endDate != null ? endDate.toEpochDay() : Long.MAX_VALUE;
+        String r = rule == null ? "" : rule.trim();
+        String upper = r.toUpperCase(Locale.ROOT);
+
+        CompiledSchedule compiled;
+        if (upper.isEmpty() || upper.equals("DAILY") || upper.equals("CUSTOM")) {
+            compiled = new CompiledSchedule(ALL_DAYS_OF_WEEK, ALL_DAYS_OF_MONTH, minutes, first, last);
+        } else if (upper.equals("WEEKLY")) {
+            int days = startDate != null ? dayBit(startDate.getDayOfWeek()) : ALL_DAYS_OF_WEEK;
+            compiled = new CompiledSchedule(days, ALL_DAYS_OF_MONTH, minutes, first, last);
+        } else if (upper.equals("MONTHLY")) {
+            int days = startDate != null ? 1 << startDate.getDayOfMonth() : ALL_DAYS_OF_MONTH;
+            compiled = new CompiledSchedule(ALL_DAYS_OF_WEEK, days, minutes, first, last);
+        } else if (upper.startsWith("RRULE:") || upper.contains("FREQ=")) {
+            compiled = compileRrule(upper.startsWith("RRULE:") ? upper.substring(6) : upper, minutes, startDate, first, last);
+        } else if (r.split("\\s+").length == 5) {
+            compiled = compileCron(r.split("\\s+"), first, last);
+        } else {
+            throw new IllegalArgumentException("Unsupported schedule: " + rule);
+        }
+        return compiled.minutes.length == 0 || compiled.firstDay > compiled.lastDay ? NEVER : compiled;
+    }
+
+    /**
+     * Compiles a reminder's repeat pattern around its first occurrence, or returns null when the
+     * reminder does not repeat.
+     */
+    public static CompiledSchedule forRepeat(String repeatPattern, LocalDateTime first) {
+        if (repeatPattern == null || repeatPattern.isBlank()) return null;
+        if (repeatPattern.trim().equalsIgnoreCase("custom")) return null;
+        String time = String.format("%02d:%02d", first.getHour(), first.getMinute());
+        return compile(repeatPattern, List.of(time), first.toLocalDate(), null);
+    }
+
+    /** First occurrence strictly after {@code afterEpochMinute}, or {@link #NONE}. */
+    public long nextOccurrence(long afterEpochMinute) {
+        if (minutes.length == 0) return NONE;
+        long day = Math.floorDiv(afterEpochMinute, MINUTES_PER_DAY);
+        int minute = (int) Math.floorMod(afterEpochMinute, MINUTES_PER_DAY);
+        if (day < firstDay) {
+            day = firstDay;
+            minute = -1;
+        }
+        for (int scanned = 0; scanned < MAX_SCAN_DAYS && day <= lastDay; scanned++, day++, minute = -1) {
+            if (!firesOn(day)) continue;
+            int m = firstMinuteAfter(minute);
+            if (m >= 0) return day * MINUTES_PER_DAY + m;
+        }
+        return NONE;
+    }
+
+    /**
+     * Writes the occurrences in ({@code fromEpochMinute}, {@code toEpochMinute}] into {@code out}, in
+     * order, and returns how many were written; stops early when {@code out} is full.
+     */
+    public int occurrencesBetween(long fromEpochMinute, long toEpochMinute, long[] out) {
+        int count = 0;
+        long t = nextOccurrence(fromEpochMinute);
+        while (t != NONE && t <= toEpochMinute && count < out.length) {
+            out[count++] = t;
+            t = nextOccurrence(t);
+        }
+        return count;
+    }
+
+    public LocalDateTime nextOccurrence(LocalDateTime after) {
+        long next = nextOccurrence(toEpochMinute(after));
+        return next == NONE ? null : ofEpochMinute(next);
+    }
+
+    public static long toEpochMinute(LocalDateTime time) {
+        return time.toLocalDate().toEpochDay() * MINUTES_PER_DAY + time.getHour() * 60L + time.getMinute();
+    }
+
+    public static LocalDateTime ofEpochMinute(long epochMinute) {
+        return LocalDate.ofEpochDay(Math.floorDiv(epochMinute, MINUTES_PER_DAY)).atStartOfDay()
+                .plusMinutes(Math.floorMod(epochMinute, MINUTES_PER_DAY));
+    }
+
+    private boolean firesOn(long epochDay) {
+        boolean weekday = (daysOfWeek & (1 << (int) Math.floorMod(epochDay + 3, 7))) != 0;
+        if (weekday == eitherDay) return weekday;
+        return daysOfMonth == ALL_DAYS_OF_MONTH || (daysOfMonth & (1 << dayOfMonth(epochDay))) != 0;
+    }
+
+    private int firstMinuteAfter(int minute) {
+        int lo = 0;
+        int hi = minutes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (minutes[mid] <= minute) lo = mid + 1; else hi = mid;
+        }
+        return lo < minutes.length ? minutes[lo] : -1;
+    }
+
+    // Civil-from-days (H. Hinnant) reduced to the day of the month, to avoid building a LocalDate.
+    private static int dayOfMonth(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        return (int) (doy - (153 * mp + 2) / 5 + 1);
+    }
+
+    private static CompiledSchedule compileRrule(String rrule, int[] minutes, LocalDate startDate, long first, long last) {
+        String freq = null;
+        int daysOfWeek = 0;
+        int daysOfMonth = 0;
+        int[] hours = null;
+        int[] byMinute = null;
+        for (String part : rrule.split(";")) {
+            if (part.isBlank()) continue;
+            String[] kv = part.split("=", 2);
+            if (kv.length != 2) throw new IllegalArgumentException("Malformed RRULE part: " + part);
+            String value = kv[1].trim();
+            switch (kv[0].trim()) {
+                case "FREQ" -> freq = value;
+                case "INTERVAL" -> {
+                    if (!value.equals("1")) throw new IllegalArgumentException("RRULE INTERVAL other than 1 is not supported");
+                }
+                case "BYDAY" -> {
+                    for (String d : value.split(",")) daysOfWeek |= dayBit(dayOfWeek(d.trim()));
+                }
+                case "BYMONTHDAY" -> {
+                    for (int d : parseInts(value, 1, 31)) daysOfMonth |= 1 << d;
+                }
+                case "BYHOUR" -> hours = parseInts(value, 0, 23);
+                case "BYMINUTE" -> byMinute = parseInts(value, 0, 59);
+                case "UNTIL" -> {
+                    try {
+                        last = Math.min(last, LocalDate.parse(value.substring(0, Math.min(8, value.length())), RRULE_DATE).toEpochDay());
+                    } catch (DateTimeParseException e) {
+                        throw new IllegalArgumentException("Malformed RRULE UNTIL: " + value);
+                    }
+                }
+                case "WKST" -> {
+                    // irrelevant with INTERVAL=1
+                }
+                default -> throw new IllegalArgumentException("Unsupported RRULE part: " + kv[0]);
+            }
+        }
+        if (freq == null) throw new IllegalArgumentException("RRULE without FREQ");
+        switch (freq) {
+            case "DAILY" -> {
+            }
+            case "WEEKLY" -> {
+                if (daysOfWeek == 0) daysOfWeek = startDate != null ? dayBit(startDate.getDayOfWeek()) : ALL_DAYS_OF_WEEK;
+            }
+            case "MONTHLY" -> {
+                if (daysOfMonth == 0 && daysOfWeek == 0) {
+                    daysOfMonth = startDate != null ? 1 << startDate.getDayOfMonth() : ALL_DAYS_OF_MONTH;
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported RRULE FREQ: " + freq);
+        }
+        if (hours != null) {
+            minutes = cross(hours, byMinute != null ? byMinute : new int[]{0});
+        } else if (byMinute != null) {
+            throw new IllegalArgumentException("RRULE BYMINUTE needs BYHOUR");
+        }
+        return new CompiledSchedule(daysOfWeek == 0 ? ALL_DAYS_OF_WEEK : daysOfWeek,
+                daysOfMonth == 0 ? ALL_DAYS_OF_MONTH : daysOfMonth, minutes, first, last);
+    }
+
+    // "minute hour day-of-month month day-of-week"; months must be "*". As in cron, when both day fields are
+    // restricted a day fires if it matches either of them.
+    private static CompiledSchedule compileCron(String[] fields, long first, long last) {
+        if (!fields[3].equals("*")) throw new IllegalArgumentException("Cron month restrictions are not supported");
+        int[] mins = parseCronField(fields[0], 0, 59);
+        int[] hours = parseCronField(fields[1], 0, 23);
+        int daysOfMonth = 0;
+        boolean anyDayOfMonth = fields[2].equals("*") || fields[2].equals("?");
+        if (anyDayOfMonth) {
+            daysOfMonth = ALL_DAYS_OF_MONTH;
+        } else {
+            for (int d : parseCronField(fields[2], 1, 31)) daysOfMonth |= 1 << d;
+        }
+        int daysOfWeek = 0;
+        boolean anyDayOfWeek = fields[4].equals("*") || fields[4].equals("?");
+        if (anyDayOfWeek) {
+            daysOfWeek = ALL_DAYS_OF_WEEK;
+        } else {
+            String dow = fields[4].toUpperCase(Locale.ROOT);
+            String[] names = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+            for (int i = 0; i < names.length; i++) dow = dow.replace(names[i], String.valueOf(i));
+            for (int d : parseCronField(dow, 0, 7)) daysOfWeek |= dayBit(DayOfWeek.of(d == 0 ? 7 : d));
+        }
+        return new CompiledSchedule(daysOfWeek, daysOfMonth, cross(hours, mins), first, last,
+                !anyDayOfMonth && !anyDayOfWeek);
+    }
+
+    private static int[] parseCronField(String field, int min, int max) {
+        return Arrays.stream(field.split(","))
+                .flatMapToInt(part -> {
+                    String[] stepParts = part.split("/", 2);
+                    int step = stepParts.length == 2 ? parseInt(stepParts[1], 1, max - min + 1) : 1;
+                    String range = stepParts[0];
+                    int lo;
+                    int hi;
+                    if (range.equals("*")) {
+                        lo = min;
+                        hi = max;
+                    } else if (range.contains("-")) {
+                        String[] bounds = range.split("-", 2);
+                        lo = parseInt(bounds[0], min, max);
+                        hi = parseInt(bounds[1], min, max);
+                    } else {
+                        lo = parseInt(range, min, max);
+                        hi = stepParts.length == 2 ? max : lo;
+                    }
+                    if (lo > hi) throw new IllegalArgumentException("Empty cron range: " + part);
+                    return IntStream.iterate(lo, v -> v <= hi, v -> v + step);
+                })
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    private static int[] parseInts(String list, int min, int max) {
+        return Arrays.stream(list.split(",")).mapToInt(v -> parseInt(v, min, max)).toArray();
+    }
+
+    private static int parseInt(String value, int min, int max) {
+        try {
+            int v = Integer.parseInt(value.trim());
+            if (v < min || v > max) throw new IllegalArgumentException("Value out of range: " + value);
+            return v;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static int[] cross(int[] hours, int[] mins) {
+        return Arrays.stream(hours)
+                .flatMap(h -> Arrays.stream(mins).map(m -> h * 60 + m))
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    private static int[] parseTimes(List<String> times) {
+        if (times == null) return new int[0];
+        return times.stream()
+                .map(t -> t == null ? new String[0] : t.trim().split(":"))
+                .filter(parts -> parts.length >= 2)
+                .mapToInt(parts -> {
+                    try {
+                        int hour = Integer.parseInt(parts[0].trim());
+                        int minute = Integer.parseInt(parts[1].trim());
+                        return hour >= 0 && hour < 24 && minute >= 0 && minute < 60 ? hour * 60 + minute : -1;
+                    } catch (NumberFormatException e) {
+                        return -1;
+                    }
+                })
+                .filter(m -> m >= 0)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    private static DayOfWeek dayOfWeek(String code) {
+        return switch (code) {
+            case "MO" -> DayOfWeek.MONDAY;
+            case "TU" -> DayOfWeek.TUESDAY;
+            case "WE" -> DayOfWeek.WEDNESDAY;
+            case "TH" -> DayOfWeek.THURSDAY;
+            case "FR" -> DayOfWeek.FRIDAY;
+            case "SA" -> DayOfWeek.SATURDAY;
+            case "SU" -> DayOfWeek.SUNDAY;
+            default -> throw new IllegalArgumentException("Unsupported RRULE BYDAY value: " + code);
+        };
+    }
+
+    private static int dayBit(DayOfWeek day) {
+        return 1 << (day.getValue() - 1);
+    }
+}
@@ -0,0 +1,207 @@
+package com.dosemate.scheduling;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Hierarchical timing wheel keyed by a long id (e.g. a reminder id).
+ *
+ * Level 0 has one slot per tick; every higher level has slots that are {@code wheelSize} times
+ * wider than the level below. An entry is parked on the lowest level that can hold its deadline
+ * and cascades down as time advances, so schedule, cancel and expiry are all O(1) per entry.
+ * Deadlines further out than {@link #horizonMillis()} are rejected and must be re-offered later.
+ *
+ * All methods are synchronized; the expiry callback runs while the lock is held and should
+ * only collect ids.
+ */
+public class HierarchicalTimingWheel {
+
+    private static final class Node {
+        final long id;
+        long deadlineTick;
+        int level;
+        int slot;
+        Node prev;
+        Node next;
+
+        Node(long id) {
+            this.id = id;
+        }
+    }
+
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    private final int levels;
+    private final Node[][] slots;
+    private final Map<Long, Node> index = new HashMap<>();
+    private Node overdue;
+    private long currentTick;
+
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, int levels, long startMillis) {
+        if (tickMillis <= 0 || levels <= 0 || Integer.bitCount(wheelSize) != 1 || wheelSize < 2) {
+            throw new IllegalArgumentException("tickMillis and levels must be positive and wheelSize a power of two");
+        }
+        this.tickMillis = tickMillis;
+        this.bits = Integer.numberOfTrailingZeros(wheelSize);
+        if ((long) bits * levels >= 62) {
+            throw new IllegalArgumentException("Wheel horizon does not fit in a long");
+        }
+        this.mask = wheelSize - 1;
+        this.levels = levels;
+        this.slots = new Node[levels][wheelSize];
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /** Furthest deadline, relative to the wheel's current time, that {@link #schedule} accepts. */
+    public long horizonMillis() {
+        return ((1L << (bits * levels)) - 1) * tickMillis;
+    }
+
+    /**
+     * Schedules (or reschedules) {@code id} to expire at {@code deadlineMillis}. Deadlines in the past
+     * expire on the next {@link #advance}. Returns false, leaving the wheel unchanged apart from
+     * dropping any previous entry for the id, when the deadline lies beyond the horizon.
+     */
+    public synchronized boolean schedule(long id, long deadlineMillis) {
+        Node node = index.get(id);
+        if (node != null) {
+            unlink(node);
+        } else {
+            node = new Node(id);
+        }
+        node.deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        if (!place(node)) {
+            index.remove(id);
+            return false;
+        }
+        index.put(id, node);
+        return true;
+    }
+
+    public synchronized boolean cancel(long id) {
+        Node node = index.remove(id);
+        if (node == null) return false;
+        unlink(node);
+        return true;
+    }
+
+    public synchronized void clear() {
+        for (Node[] level : slots) {
+            Arrays.fill(level, null);
+        }
+        overdue = null;
+        index.clear();
+    }
+
+    public synchronized boolean contains(long id) {
+        return index.containsKey(id);
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Moves the wheel forward to {@code nowMillis}, handing every id whose deadline has passed to
+     * {@code expired}. Returns the number of expired ids.
+     */
+    public synchronized int advance(long nowMillis, LongConsumer expired) {
+        int count = drainOverdue(expired);
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = levels - 1; level > 0; level--) {
+                long levelMask = (1L << (bits * level)) - 1;
+                if ((currentTick & levelMask) == 0) {
+                    cascade(level, (int) ((currentTick >>> (bits * level)) & mask));
+                }
+            }
+            count += expireSlot((int) (currentTick & mask), expired);
+        }
+        return count;
+    }
+
+    private boolean place(Node node) {
+        long delta = node.deadlineTick - currentTick;
+        if (delta <= 0) {
+            node.level = -1;
+            node.slot = -1;
+            node.prev = null;
+            node.next = overdue;
+            if (overdue != null) overdue.prev = node;
+            overdue = node;
+            return true;
+        }
+        for (int level = 0; level < levels; level++) {
+            if (delta < (1L << (bits * (level + 1)))) {
+                int slot = (int) ((node.deadlineTick >>> (bits * level)) & mask);
+                node.level = level;
+                node.slot = slot;
+                node.prev = null;
+                node.next = slots[level][slot];
+                if (node.next != null) node.next.prev = node;
+                slots[level][slot] = node;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else if (node.level < 0) {
+            overdue = node.next;
+        } else {
+            slots[node.level][node.slot] = node.next;
+        }
+        if (node.next != null) node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    private void cascade(int level, int slot) {
+        Node node = slots[level][slot];
+        slots[level][slot] = null;
+        while (node != null) {
+            Node next = node.next;
+            place(node);
+            node = next;
+        }
+    }
+
+    private int expireSlot(int slot, LongConsumer expired) {
+        Node node = slots[0][slot];
+        slots[0][slot] = null;
+        int count = 0;
+        while (node != null) {
+            Node next = node.next;
+            if (node.deadlineTick <= currentTick) {
+                index.remove(node.id);
+                expired.accept(node.id);
+                count++;
+            } else {
+                place(node);
+            }
+            node = next;
+        }
+        return count + drainOverdue(expired);
+    }
+
+    private int drainOverdue(LongConsumer expired) {
+        int count = 0;
+        Node node = overdue;
+        overdue = null;
+        while (node != null) {
+            Node next = node.next;
+            index.remove(node.id);
+            expired.accept(node.id);
+            count++;
+            node = next;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,65 @@
+package com.dosemate.scheduling;
+
+import com.dosemate.model.Medicine;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled schedules per medicine id. An entry is rebuilt when the medicine's frequency, reminder times,
+ * dates or active flag no longer match what it was compiled from, so edits made through any node are
+ * picked up without explicit invalidation.
+ */
+@Component
+public class MedicineSchedules {
+
+    private record Entry(int fingerprint, CompiledSchedule schedule) {
+    }
+
+    private final Map<Long, Entry> cache = new ConcurrentHashMap<>();
+
+    public CompiledSchedule get(Medicine medicine) {
+        int fingerprint = fingerprint(medicine);
+        Long id = medicine.getId();
+        if (id != null) {
+            Entry entry = cache.get(id);
+            if (entry != null && entry.fingerprint() == fingerprint) return entry.schedule();
+        }
+        CompiledSchedule schedule = compile(medicine);
+        if (id != null) cache.put(id, new Entry(fingerprint, schedule));
+        return schedule;
+    }
+
+    /**
+     * First dose firing strictly after {@code after}, expanded in the owner's time zone, or null when the
+     * medicine is inactive, ended or has no times. See {@link ScheduleZones#nextFire} for DST gaps.
+     */
+    public Instant nextFireAt(Medicine medicine, Instant after) {
+        return ScheduleZones.nextFire(get(medicine), after, ScheduleZones.of(medicine.getUser()));
+    }
+
+    public void evict(Long medicineId) {
+        cache.remove(medicineId);
+    }
+
+    /** Compiles without caching; throws IllegalArgumentException when the frequency is not understood. */
+    public static CompiledSchedule compile(Medicine medicine) {
+        if (!medicine.isActive()) return CompiledSchedule.NEVER;
+        return CompiledSchedule.compile(medicine.getFrequency(), medicine.getReminderTimes(),
+                medicine.getStartDate(), medicine.getEndDate());
+    }
+
+    private static int fingerprint(Medicine medicine) {
+        // hash the time strings one by one; a Hibernate bag does not implement hashCode by content
+        int h = Objects.hash(medicine.isActive(), medicine.getFrequency(), medicine.getStartDate(), medicine.getEndDate());
+        List<String> times = medicine.getReminderTimes();
+        if (times != null) {
+            for (String t : times) h = 31 * h + Objects.hashCode(t);
+        }
+        return h;
+    }
+}
@@ -0,0 +1,174 @@
+package com.dosemate.scheduling;
+
+import com.dosemate.model.SchedulerLease;
+import com.dosemate.model.SchedulerNode;
+import com.dosemate.repository.SchedulerLeaseRepository;
+import com.dosemate.repository.SchedulerNodeRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Splits scheduling work into {@code app.scheduler.partitions} partitions by user id and hands them out
+ * to the running nodes through time-limited leases stored in the database.
+ *
+ * Every renewal the node records a heartbeat, works out its fair share (partitions / live nodes),
+ * renews the leases it holds up to that share, releases the rest and takes over free or expired
+ * leases until the share is reached. A node that stops renewing loses its leases after
+ * {@code app.scheduler.lease-seconds} and the survivors pick them up on their next renewal.
+ */
+@Slf4j
+@Component
+public class PartitionLeaseManager {
+
+    private final SchedulerLeaseRepository leaseRepository;
+    private final SchedulerNodeRepository nodeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String nodeId;
+    private final int partitions;
+    private final Duration leaseDuration;
+    private volatile Set<Integer> owned = Collections.emptySet();
+    private volatile Instant ownedUntil = Instant.EPOCH;
+    private boolean partitionRowsCreated;
+
+    public PartitionLeaseManager(SchedulerLeaseRepository leaseRepository,
+                                 SchedulerNodeRepository nodeRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 ApplicationEventPublisher eventPublisher,
+                                 @Value("${app.scheduler.node-id:}") String nodeId,
+                                 @Value("${app.scheduler.partitions:16}") int partitions,
+                                 @Value("${app.scheduler.lease-seconds:30}") long leaseSeconds) {
+        if (partitions <= 0) throw new IllegalArgumentException("app.scheduler.partitions must be positive");
+        this.leaseRepository = leaseRepository;
+        this.nodeRepository = nodeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.partitions = partitions;
+        this.leaseDuration = Duration.ofSeconds(leaseSeconds);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int getPartitionCount() {
+        return partitions;
+    }
+
+    /** Partitions this node may work on right now; empty once its leases could have expired. */
+    public Set<Integer> ownedPartitions() {
+        return Instant.now().isBefore(ownedUntil) ? owned : Collections.emptySet();
+    }
+
+    public boolean ownsAllPartitions() {
+        return ownedPartitions().size() == partitions;
+    }
+
+    public int partitionOf(long userId) {
+        return (int) Math.floorMod(userId, (long) partitions);
+    }
+
+    public boolean ownsUser(Long userId) {
+        return userId != null && ownedPartitions().contains(partitionOf(userId));
+    }
+
+    @Scheduled(fixedRateString = "${app.scheduler.lease-renew-ms:10000}")
+    public synchronized void rebalance() {
+        ensurePartitionRows();
+        Instant now = Instant.now();
+        Instant expiresAt = now.plus(leaseDuration);
+
+        Set<Integer> mine = transactionTemplate.execute(tx -> {
+            nodeRepository.save(new SchedulerNode(nodeId, now));
+            nodeRepository.deleteByLastSeenAtBefore(now.minus(leaseDuration.multipliedBy(10)));
+            long liveNodes = Math.max(1, nodeRepository.countByLastSeenAtAfter(now.minus(leaseDuration)));
+            int share = (int) ((partitions + liveNodes - 1) / liveNodes);
+
+            List<SchedulerLease> leases = leaseRepository.findAll(Sort.by("partitionId"));
+            Set<Integer> held = new TreeSet<>();
+            for (SchedulerLease lease : leases) {
+                if (!nodeId.equals(lease.getOwner())) continue;
+                if (held.size() < share && leaseRepository.tryAcquire(lease.getPartitionId(), nodeId, expiresAt, now) == 1) {
+                    held.add(lease.getPartitionId());
+                } else {
+                    leaseRepository.release(lease.getPartitionId(), nodeId);
+                }
+            }
+            // start at a node-specific offset so nodes joining together do not race for the same rows
+            int offset = Math.floorMod(nodeId.hashCode(), leases.size() == 0 ? 1 : leases.size());
+            for (int i = 0; i < leases.size() && held.size() < share; i++) {
+                SchedulerLease lease = leases.get((offset + i) % leases.size());
+                boolean free = lease.getOwner() == null || lease.getExpiresAt() == null || lease.getExpiresAt().isBefore(now);
+                if (free && leaseRepository.tryAcquire(lease.getPartitionId(), nodeId, expiresAt, now) == 1) {
+                    held.add(lease.getPartitionId());
+                }
+            }
+            return held;
+        });
+
+        Set<Integer> previous = owned;
+        owned = Collections.unmodifiableSet(mine);
+        // stop working a little before the lease really expires to absorb clock skew between nodes
+        ownedUntil = expiresAt.minus(leaseDuration.dividedBy(5));
+        if (!mine.equals(previous)) {
+            log.info("Node {} now owns {} of {} scheduler partitions: {}", nodeId, mine.size(), partitions, mine);
+            eventPublisher.publishEvent(new PartitionOwnershipChangedEvent(owned));
+        }
+    }
+
+    @PreDestroy
+    public synchronized void releaseAll() {
+        Set<Integer> held = owned;
+        owned = Collections.emptySet();
+        ownedUntil = Instant.EPOCH;
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                held.forEach(p -> leaseRepository.release(p, nodeId));
+                nodeRepository.deleteById(nodeId);
+            });
+        } catch (Exception e) {
+            log.warn("Could not release scheduler leases for node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private void ensurePartitionRows() {
+        if (partitionRowsCreated) return;
+        for (int p = 0; p < partitions; p++) {
+            if (leaseRepository.existsById(p)) continue;
+            try {
+                leaseRepository.save(new SchedulerLease(p, null, null));
+            } catch (DataIntegrityViolationException e) {
+                // another node created it first
+            }
+        }
+        partitionRowsCreated = true;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
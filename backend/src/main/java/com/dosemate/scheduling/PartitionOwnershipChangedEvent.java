@@ -0,0 +1,9 @@
+package com.dosemate.scheduling;
+
+import java.util.Set;
+
+/**
+ * Published by {@link PartitionLeaseManager} whenever the set of partitions owned by this node changes.
+ */
+public record PartitionOwnershipChangedEvent(Set<Integer> owned) {
+}
@@ -0,0 +1,117 @@
+package com.dosemate.scheduling;
+
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.repository.ReminderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Treats due PENDING reminders as a work queue that any number of workers, threads or nodes can drain
+ * at once without delivering a reminder twice.
+ *
+ * {@link #claim} stamps a batch of due reminders with a fresh token and a visibility deadline and
+ * returns them; {@link #acknowledge} marks a delivered reminder TRIGGERED and clears the claim. A claim
+ * that is not acknowledged before its deadline lapses, and the reminder is handed out again.
+ *
+ * On PostgreSQL the batch is picked with {@code FOR UPDATE SKIP LOCKED}, so concurrent claimers never
+ * wait on each other. Elsewhere (H2) candidates are read first and claimed with a conditional UPDATE;
+ * rows another worker claimed in between simply drop out of the batch.
+ */
+@Slf4j
+@Component
+public class ReminderClaimQueue {
+
+    private final ReminderRepository reminderRepository;
+    private final PartitionLeaseManager leaseManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration visibilityTimeout;
+    private final boolean skipLocked;
+
+    public ReminderClaimQueue(ReminderRepository reminderRepository,
+                              PartitionLeaseManager leaseManager,
+                              PlatformTransactionManager transactionManager,
+                              DataSource dataSource,
+                              @Value("${app.dispatcher.visibility-timeout-seconds:60}") long visibilityTimeoutSeconds) {
+        this.reminderRepository = reminderRepository;
+        this.leaseManager = leaseManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.visibilityTimeout = Duration.ofSeconds(visibilityTimeoutSeconds);
+        this.skipLocked = supportsSkipLocked(dataSource);
+    }
+
+    public Duration getVisibilityTimeout() {
+        return visibilityTimeout;
+    }
+
+    /** Claims up to {@code limit} reminders due by {@code dueBy}, oldest first, in owned partitions. */
+    public Claim claim(Instant dueBy, int limit) {
+        Set<Integer> owned = leaseManager.ownedPartitions();
+        if (owned.isEmpty()) return Claim.EMPTY;
+        String token = UUID.randomUUID().toString();
+        int partitions = leaseManager.getPartitionCount();
+        List<Reminder> reminders = transactionTemplate.execute(tx -> {
+            Instant now = Instant.now();
+            Instant until = now.plus(visibilityTimeout);
+            int claimed;
+            if (skipLocked) {
+                claimed = reminderRepository.claimDueSkipLocked(token, until, dueBy, now, partitions, owned, limit);
+            } else {
+                List<Long> ids = reminderRepository.findClaimableIds(dueBy, now, partitions, owned, PageRequest.of(0, limit));
+                claimed = ids.isEmpty() ? 0 : reminderRepository.claimIds(ids, token, until, now);
+            }
+            return claimed == 0 ? List.<Reminder>of() : reminderRepository.findByClaimToken(token);
+        });
+        return reminders.isEmpty() ? Claim.EMPTY : new Claim(token, reminders);
+    }
+
+    /** Marks a claimed reminder TRIGGERED; returns false when the claim had already been lost. */
+    public boolean acknowledge(Claim claim, Reminder reminder) {
+        return acknowledge(claim, reminder, () -> {});
+    }
+
+    /**
+     * Like {@link #acknowledge(Claim, Reminder)}, running {@code onAcknowledged} in the same transaction when
+     * the claim still held, e.g. to record the outgoing event.
+     */
+    public boolean acknowledge(Claim claim, Reminder reminder, Runnable onAcknowledged) {
+        Boolean acknowledged = transactionTemplate.execute(tx -> {
+            if (reminderRepository.acknowledgeClaim(reminder.getId(), claim.token(), ReminderStatus.TRIGGERED, Instant.now()) == 0) {
+                return false;
+            }
+            onAcknowledged.run();
+            return true;
+        });
+        return Boolean.TRUE.equals(acknowledged);
+    }
+
+    private static boolean supportsSkipLocked(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            return product != null && product.toLowerCase().contains("postgresql");
+        } catch (Exception e) {
+            log.warn("Could not detect the database type, using optimistic reminder claims: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    public record Claim(String token, List<Reminder> reminders) {
+        static final Claim EMPTY = new Claim(null, List.of());
+
+        public boolean isEmpty() {
+            return reminders.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.dosemate.scheduling;
+
+import com.dosemate.model.User;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffsetTransition;
+import java.time.ZonedDateTime;
+
+/**
+ * Conversions between a user's wall-clock schedule and the UTC instants the scheduler runs on.
+ */
+public final class ScheduleZones {
+
+    private ScheduleZones() {
+    }
+
+    /** The zone for an IANA id, or the server zone when the id is missing or unknown. */
+    public static ZoneId of(String zoneId) {
+        if (zoneId == null || zoneId.isBlank()) return ZoneId.systemDefault();
+        try {
+            return ZoneId.of(zoneId.trim());
+        } catch (DateTimeException e) {
+            return ZoneId.systemDefault();
+        }
+    }
+
+    public static ZoneId of(User user) {
+        return of(user != null ? user.getTimeZone() : null);
+    }
+
+    /**
+     * The instant a wall-clock time happens in {@code zone}. Times skipped by a DST gap move forward by
+     * the length of the gap; times repeated by an overlap resolve to the earlier occurrence.
+     */
+    public static Instant toInstant(LocalDateTime local, ZoneId zone) {
+        return ZonedDateTime.ofLocal(local, zone, null).toInstant();
+    }
+
+    public static LocalDateTime toLocal(Instant instant, ZoneId zone) {
+        return LocalDateTime.ofInstant(instant, zone);
+    }
+
+    /**
+     * The first instant after {@code after} at which {@code schedule} fires in {@code zone}, or null when it
+     * never fires again. A dose inside a DST gap fires shifted forward by the gap's length, so it can fire
+     * after doses scheduled later on the wall clock; both are kept in firing order and neither is skipped.
+     */
+    public static Instant nextFire(CompiledSchedule schedule, Instant after, ZoneId zone) {
+        LocalDateTime from = toLocal(after, zone);
+        // within a gap's length after the gap, doses scheduled inside it may still be due
+        ZoneOffsetTransition last = zone.getRules().previousTransition(after.plusNanos(1));
+        if (last != null && last.isGap() && after.isBefore(last.getInstant().plus(last.getDuration()))) {
+            from = from.minus(last.getDuration());
+        }
+        Instant best = null;
+        LocalDateTime bestLocal = null;
+        for (LocalDateTime local = schedule.nextOccurrence(from); local != null; local = schedule.nextOccurrence(local)) {
+            // later wall-clock times cannot fire before the best one found so far
+            if (bestLocal != null && !local.isBefore(bestLocal)) break;
+            Instant at = toInstant(local, zone);
+            if (at.isAfter(after) && (best == null || at.isBefore(best))) {
+                best = at;
+                bestLocal = toLocal(at, zone);
+            }
+        }
+        return best;
+    }
+}
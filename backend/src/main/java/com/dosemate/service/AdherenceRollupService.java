@@ -0,0 +1,202 @@
+package com.dosemate.service;
+
+import com.dosemate.dto.AdherenceTotals;
+import com.dosemate.dto.DailyAdherence;
+import com.dosemate.dto.MedicineAdherence;
+import com.dosemate.model.AdherenceDaily;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.model.User;
+import com.dosemate.repository.AdherenceDailyRepository;
+import com.dosemate.repository.HistoryRepository;
+import com.dosemate.repository.UserRepository;
+import com.dosemate.scheduling.ScheduleZones;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps {@code adherence_daily}: per (user, medicine, day) counts of history rows, so adherence
+ * statistics read a handful of rollup rows instead of a user's whole history.
+ *
+ * Every writer of history adds its row here in the same transaction through {@link #record} or
+ * {@link #recordMissed}. Days are taken in the user's time zone at the moment of counting.
+ *
+ * {@link #rebuild()} recomputes the table from history, one user per transaction. It runs by itself at
+ * startup while the table is still empty, and on every startup with {@code app.adherence.rebuild-on-startup};
+ * counts written by other nodes while a user is rebuilt may be off until the next rebuild, so force it
+ * while the cluster is quiet.
+ */
+@Slf4j
+@Service
+public class AdherenceRollupService {
+
+    private final AdherenceDailyRepository adherenceDailyRepository;
+    private final HistoryRepository historyRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean onConflict;
+    private final boolean rebuildOnStartup;
+
+    public AdherenceRollupService(AdherenceDailyRepository adherenceDailyRepository,
+                                  HistoryRepository historyRepository,
+                                  UserRepository userRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  DataSource dataSource,
+                                  @Value("${app.adherence.rebuild-on-startup:false}") boolean rebuildOnStartup) {
+        this.adherenceDailyRepository = adherenceDailyRepository;
+        this.historyRepository = historyRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.onConflict = supportsOnConflict(dataSource);
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        boolean empty = adherenceDailyRepository.count() == 0 && historyRepository.findFirstByOrderByIdAsc().isPresent();
+        if (rebuildOnStartup || empty) rebuild();
+    }
+
+    /** Counts one history row; call inside the transaction that writes it. */
+    public void record(User user, Long medicineId, ReminderStatus status, Instant recordedAt, Long latencySeconds) {
+        if (user == null || medicineId == null) return;
+        Counts c = new Counts();
+        c.add(status, latencySeconds);
+        add(user.getId(), medicineId, recordedAt.atZone(ScheduleZones.of(user)).toLocalDate(), c);
+    }
+
+    /** Counts one AUTO/MISSED row per reminder, as written by the sweeper; reminders come with their medicine. */
+    public void recordMissed(Collection<Reminder> reminders, Instant recordedAt) {
+        if (reminders.isEmpty()) return;
+        List<Long> userIds = reminders.stream().map(r -> r.getMedicine().getUser().getId()).distinct().toList();
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        Map<AdherenceDaily.Key, Counts> deltas = new HashMap<>();
+        for (Reminder r : reminders) {
+            User user = users.get(r.getMedicine().getUser().getId());
+            if (user == null) continue;
+            LocalDate day = recordedAt.atZone(ScheduleZones.of(user)).toLocalDate();
+            deltas.computeIfAbsent(new AdherenceDaily.Key(user.getId(), r.getMedicine().getId(), day), k -> new Counts())
+                    .add(ReminderStatus.MISSED, null);
+        }
+        deltas.forEach((k, c) -> add(k.getUserId(), k.getMedicineId(), k.getDay(), c));
+    }
+
+    /** Drops a deleted medicine's counts; call inside the transaction that deletes its history. */
+    public void forgetMedicine(Long userId, Long medicineId) {
+        adherenceDailyRepository.deleteByUserIdAndMedicineId(userId, medicineId);
+    }
+
+    public AdherenceTotals totals(Long userId) {
+        return adherenceDailyRepository.totalsForUser(userId);
+    }
+
+    public AdherenceTotals totals(Long userId, Long medicineId) {
+        return adherenceDailyRepository.totalsForMedicine(userId, medicineId);
+    }
+
+    public List<MedicineAdherence> totalsByMedicine(Long userId) {
+        return adherenceDailyRepository.totalsByMedicine(userId);
+    }
+
+    /** Days in [from, to] with any history, oldest first. */
+    public List<DailyAdherence> daily(Long userId, LocalDate from, LocalDate to) {
+        return adherenceDailyRepository.dailyForUser(userId, from, to);
+    }
+
+    /** Like {@link #daily(Long, LocalDate, LocalDate)} for one medicine, or all of them when {@code medicineId} is null. */
+    public List<DailyAdherence> daily(Long userId, Long medicineId, LocalDate from, LocalDate to) {
+        if (medicineId == null) return daily(userId, from, to);
+        return adherenceDailyRepository.dailyForMedicine(userId, medicineId, from, to);
+    }
+
+    /** Recomputes the rollup of every user from history. */
+    public void rebuild() {
+        int users = 0;
+        Page<User> page;
+        int pageNumber = 0;
+        do {
+            page = userRepository.findAll(PageRequest.of(pageNumber++, 100, Sort.by("id")));
+            for (User user : page) {
+                try {
+                    transactionTemplate.executeWithoutResult(tx -> rebuild(user));
+                    users++;
+                } catch (Exception e) {
+                    log.error("Could not rebuild the adherence rollup of user {}: {}", user.getId(), e.getMessage());
+                }
+            }
+        } while (page.hasNext());
+        log.info("Rebuilt the adherence rollup of {} users", users);
+    }
+
+    private void rebuild(User user) {
+        ZoneId zone = ScheduleZones.of(user);
+        Map<AdherenceDaily.Key, Counts> counts = new HashMap<>();
+        for (Object[] row : historyRepository.findRollupInputs(user.getId())) {
+            LocalDate day = ((Instant) row[1]).atZone(zone).toLocalDate();
+            counts.computeIfAbsent(new AdherenceDaily.Key(user.getId(), (Long) row[0], day), k -> new Counts())
+                    .add((ReminderStatus) row[2], (Long) row[3]);
+        }
+        adherenceDailyRepository.deleteByUserId(user.getId());
+        counts.forEach((k, c) -> add(k.getUserId(), k.getMedicineId(), k.getDay(), c));
+    }
+
+    private void add(Long userId, Long medicineId, LocalDate day, Counts c) {
+        if (onConflict) {
+            adherenceDailyRepository.addOnConflict(userId, medicineId, day, c.total, c.taken, c.missed, c.latencySum, c.latencyCount);
+        } else {
+            adherenceDailyRepository.addMerge(userId, medicineId, day, c.total, c.taken, c.missed, c.latencySum, c.latencyCount);
+        }
+    }
+
+    private static boolean supportsOnConflict(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            return product != null && product.toLowerCase().contains("postgresql");
+        } catch (Exception e) {
+            log.warn("Could not detect the database type, using MERGE for the adherence rollup: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static final class Counts {
+        long total;
+        long taken;
+        long missed;
+        long latencySum;
+        long latencyCount;
+
+        void add(ReminderStatus status, Long latencySeconds) {
+            total++;
+            if (status == ReminderStatus.TAKEN) {
+                taken++;
+                if (latencySeconds != null) {
+                    latencySum += latencySeconds;
+                    latencyCount++;
+                }
+            } else if (status == ReminderStatus.MISSED) {
+                missed++;
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.dosemate.service;
 import com.dosemate.dto.*;
 import com.dosemate.model.*;
 import com.dosemate.repository.*;
+import com.dosemate.websocket.CaregiverIndex;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,18 +20,24 @@ public class CaregiverService {
     private final ReminderRepository reminderRepository;
     private final HistoryRepository historyRepository;
     private final MedicineRepository medicineRepository;
+    private final CaregiverIndex caregiverIndex;
+    private final AdherenceRollupService adherenceRollupService;
 
     public CaregiverService(
             CaregiverRelationRepository caregiverRelationRepository,
             UserRepository userRepository,
             ReminderRepository reminderRepository,
             HistoryRepository historyRepository,
-            MedicineRepository medicineRepository) {
+            MedicineRepository medicineRepository,
+            CaregiverIndex caregiverIndex,
+            AdherenceRollupService adherenceRollupService) {
         this.caregiverRelationRepository = caregiverRelationRepository;
         this.userRepository = userRepository;
         this.reminderRepository = reminderRepository;
         this.historyRepository = historyRepository;
         this.medicineRepository = medicineRepository;
+        this.caregiverIndex = caregiverIndex;
+        this.adherenceRollupService = adherenceRollupService;
     }
 
     // Patient invites caregiver by generating a code
@@ -70,6 +77,7 @@ public class CaregiverService {
         relation.setApprovedAt(Instant.now());
 
         CaregiverRelation saved = caregiverRelationRepository.save(relation);
+        linkFeed(saved);
         return mapToDTO(saved);
     }
 
@@ -90,6 +98,7 @@ public class CaregiverService {
         relation.setApprovedAt(Instant.now());
 
         CaregiverRelation saved = caregiverRelationRepository.save(relation);
+        linkFeed(saved);
         return mapToDTO(saved);
     }
 
@@ -108,6 +117,7 @@ public class CaregiverService {
 
         relation.setStatus(CaregiverStatus.REJECTED);
         caregiverRelationRepository.save(relation);
+        unlinkFeed(relation);
     }
 
     // Patient removes caregiver
@@ -124,6 +134,7 @@ public class CaregiverService {
         }
 
         caregiverRelationRepository.delete(relation);
+        unlinkFeed(relation);
     }
 
     // Caregiver lists all approved patients
@@ -171,7 +182,7 @@ public class CaregiverService {
             throw new IllegalArgumentException("Not authorized to view this patient");
         }
 
-        return historyRepository.findByReminder_Medicine_UserOrderByRecordedAtDesc(patient);
+        return historyRepository.findAllForUser(patient.getId());
     }
 
     // Get pending caregiver requests (for patient)
@@ -221,6 +232,7 @@ public class CaregiverService {
                 }
 
                 CaregiverRelation saved = caregiverRelationRepository.save(relation);
+                if (saved.getStatus() == CaregiverStatus.APPROVED) linkFeed(saved);
                 return mapToDTO(saved);
         }
 
@@ -236,17 +248,13 @@ public class CaregiverService {
 
     private PatientOverviewDTO buildPatientOverview(User patient) {
         List<Reminder> pendingReminders = reminderRepository.findByMedicine_UserAndStatus(patient, ReminderStatus.PENDING);
-        List<History> missedHistory = historyRepository.findByReminder_Medicine_User(patient).stream()
-                .filter(h -> h.getStatus() == ReminderStatus.MISSED)
-                .collect(Collectors.toList());
+        AdherenceTotals totals = adherenceRollupService.totals(patient.getId());
 
         List<Medicine> medicines = medicineRepository.findByUser(patient);
         long medicineCount = medicines.stream().filter(Medicine::isActive).count();
 
         // Calculate adherence
-        List<History> allHistory = historyRepository.findByReminder_Medicine_User(patient);
-        long taken = allHistory.stream().filter(h -> h.getStatus() == ReminderStatus.TAKEN).count();
-        double adherenceRate = allHistory.isEmpty() ? 0.0 : (double) taken / allHistory.size() * 100;
+        double adherenceRate = totals.adherenceRate();
 
         PatientOverviewDTO dto = new PatientOverviewDTO();
         dto.setPatientId(patient.getId());
@@ -255,19 +263,26 @@ public class CaregiverService {
         dto.setAge(patient.getAge());
         dto.setPhone(patient.getPhone());
         dto.setPendingRemindersCount(pendingReminders.size());
-        dto.setMissedRemindersCount(missedHistory.size());
+        dto.setMissedRemindersCount(totals.missed().intValue());
         dto.setAdherenceRate(adherenceRate);
         dto.setMedicinesCount(medicineCount);
 
         // Last activity
-                if (!allHistory.isEmpty()) {
-                        History lastHistory = allHistory.get(0);
-                        dto.setLastActivity(lastHistory.getRecordedAt() != null ? lastHistory.getRecordedAt().toString() : null);
-                }
+                historyRepository.findFirstByUserIdOrderByRecordedAtDesc(patient.getId()).ifPresent(lastHistory ->
+                        dto.setLastActivity(lastHistory.getRecordedAt() != null ? lastHistory.getRecordedAt().toString() : null));
 
         return dto;
     }
 
+    // Approved caregivers receive the patient's dose events live; the index changes once the transaction commits.
+    private void linkFeed(CaregiverRelation relation) {
+        caregiverIndex.link(relation.getPatient().getId(), relation.getCaregiver().getId());
+    }
+
+    private void unlinkFeed(CaregiverRelation relation) {
+        caregiverIndex.unlink(relation.getPatient().getId(), relation.getCaregiver().getId());
+    }
+
     private CaregiverRelationDTO mapToDTO(CaregiverRelation relation) {
         return new CaregiverRelationDTO(
                 relation.getId(),
@@ -0,0 +1,259 @@
+package com.dosemate.service;
+
+import com.dosemate.model.Escalation;
+import com.dosemate.model.Medicine;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.repository.EscalationRepository;
+import com.dosemate.repository.ReminderRepository;
+import com.dosemate.scheduling.HierarchicalTimingWheel;
+import com.dosemate.scheduling.PartitionLeaseManager;
+import com.dosemate.scheduling.PartitionOwnershipChangedEvent;
+import com.dosemate.websocket.EscalationEvent;
+import com.dosemate.websocket.EventOutbox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Alerts a patient's approved caregivers when a fired dose is not taken in time, and again every
+ * {@code app.escalation.stage-interval-minutes} up to {@code app.escalation.stages} alerts.
+ *
+ * Every open escalation is a row in {@code escalations}, written in the transaction that fires the reminder,
+ * and an entry in an in-memory timing wheel keyed by reminder id. The table is read once at startup (and after
+ * partitions move); from then on only due escalations touch the database, and taking the dose removes the
+ * entry from the wheel in O(1).
+ *
+ * The wheel only says when to look. A due escalation is re-checked against the reminder, so one taken or
+ * deleted through another node is dropped instead of alerting. Only users in partitions leased by this node
+ * are tracked.
+ */
+@Slf4j
+@Service
+public class EscalationService {
+
+    private static final Set<ReminderStatus> NOT_TAKEN = EnumSet.of(ReminderStatus.TRIGGERED, ReminderStatus.MISSED);
+    private static final int CHUNK_SIZE = 200;
+
+    private final EscalationRepository escalationRepository;
+    private final ReminderRepository reminderRepository;
+    private final PartitionLeaseManager leaseManager;
+    private final EventOutbox eventOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration defaultThreshold;
+    private final Duration stageInterval;
+    private final int stages;
+    private final int loadPageSize;
+    private final HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(1000, 64, 4, System.currentTimeMillis());
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("escalation-"));
+    private final AtomicBoolean working = new AtomicBoolean();
+    private final Counter sentCounter;
+    private final Counter cancelledCounter;
+    private volatile boolean ready;
+    private volatile boolean loaded;
+
+    public EscalationService(EscalationRepository escalationRepository,
+                             ReminderRepository reminderRepository,
+                             PartitionLeaseManager leaseManager,
+                             EventOutbox eventOutbox,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.escalation.after-minutes:15}") long afterMinutes,
+                             @Value("${app.escalation.stage-interval-minutes:15}") long stageIntervalMinutes,
+                             @Value("${app.escalation.stages:3}") int stages,
+                             @Value("${app.escalation.load-page-size:1000}") int loadPageSize) {
+        this.escalationRepository = escalationRepository;
+        this.reminderRepository = reminderRepository;
+        this.leaseManager = leaseManager;
+        this.eventOutbox = eventOutbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultThreshold = Duration.ofMinutes(afterMinutes);
+        this.stageInterval = Duration.ofMinutes(Math.max(1, stageIntervalMinutes));
+        this.stages = Math.max(1, stages);
+        this.loadPageSize = Math.max(1, loadPageSize);
+        this.sentCounter = Counter.builder("dosemate.escalations.sent")
+                .description("Missed-dose alerts sent to caregivers")
+                .register(meterRegistry);
+        this.cancelledCounter = Counter.builder("dosemate.escalations.cancelled")
+                .description("Escalations dropped because the dose was taken or rescheduled")
+                .register(meterRegistry);
+        Gauge.builder("dosemate.escalations.pending", wheel, HierarchicalTimingWheel::size)
+                .description("Escalations waiting in the timing wheel")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdown();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        ready = true;
+        load();
+    }
+
+    // Partitions moved between nodes: forget everything and reload on the next tick.
+    @EventListener
+    public synchronized void onOwnershipChanged(PartitionOwnershipChangedEvent event) {
+        wheel.clear();
+        loaded = false;
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void tick() {
+        if (!ready) return;
+        if (!loaded) load();
+        if (working.get()) return; // the previous round is still sending; its due entries wait for the next tick
+        List<Long> due = new ArrayList<>();
+        wheel.advance(System.currentTimeMillis(), due::add);
+        if (due.isEmpty()) return;
+        working.set(true);
+        worker.execute(() -> {
+            try {
+                escalate(due);
+            } catch (Exception e) {
+                log.error("Escalation round failed: {}", e.getMessage());
+            } finally {
+                working.set(false);
+            }
+        });
+    }
+
+    /**
+     * Opens an escalation for a reminder that has just fired; call inside the transaction that marks it
+     * TRIGGERED. The threshold is the medicine's {@code escalateAfterMinutes}, or the default; zero or less
+     * turns escalation off for the medicine.
+     */
+    public void open(Reminder reminder, Long userId) {
+        Medicine m = reminder.getMedicine();
+        Duration threshold = m != null && m.getEscalateAfterMinutes() != null
+                ? Duration.ofMinutes(m.getEscalateAfterMinutes()) : defaultThreshold;
+        if (threshold.isNegative() || threshold.isZero() || userId == null) return;
+        Instant firedAt = reminder.getFireAt() != null ? reminder.getFireAt() : Instant.now();
+        // a snoozed reminder fires again under the same id
+        Escalation e = escalationRepository.findByReminderId(reminder.getId())
+                .orElseGet(() -> new Escalation(null, reminder.getId(), userId, 0, null));
+        e.setStage(0);
+        e.setDueAt(firedAt.plus(threshold));
+        escalationRepository.save(e);
+        afterCommit(() -> schedule(e.getReminderId(), e.getUserId(), e.getDueAt()));
+    }
+
+    /** Drops the reminder's escalation, if any, once the surrounding transaction commits. */
+    public void cancel(Long reminderId) {
+        if (escalationRepository.deleteByReminderId(reminderId) > 0) cancelledCounter.increment();
+        afterCommit(() -> wheel.cancel(reminderId));
+    }
+
+    public int pending() {
+        return wheel.size();
+    }
+
+    // Sends the next alert for each due reminder, in chunks with one transaction each.
+    void escalate(List<Long> reminderIds) {
+        for (int from = 0; from < reminderIds.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = reminderIds.subList(from, Math.min(from + CHUNK_SIZE, reminderIds.size()));
+            List<Escalation> next = transactionTemplate.execute(tx -> escalateChunk(chunk));
+            if (next != null) next.forEach(e -> schedule(e.getReminderId(), e.getUserId(), e.getDueAt()));
+        }
+    }
+
+    private List<Escalation> escalateChunk(List<Long> reminderIds) {
+        Map<Long, Reminder> reminders = new HashMap<>();
+        for (Reminder r : reminderRepository.findWithMedicineByIdIn(reminderIds)) reminders.put(r.getId(), r);
+        Instant now = Instant.now();
+        List<Escalation> next = new ArrayList<>();
+        for (Escalation e : escalationRepository.findByReminderIdIn(reminderIds)) {
+            Reminder r = reminders.get(e.getReminderId());
+            if (r == null || !NOT_TAKEN.contains(r.getStatus())) {
+                escalationRepository.delete(e);
+                cancelledCounter.increment();
+                continue;
+            }
+            if (e.getDueAt().isAfter(now.plusSeconds(1))) {
+                // pushed back through another node since it was loaded
+                next.add(e);
+                continue;
+            }
+            int stage = e.getStage() + 1;
+            Medicine m = r.getMedicine();
+            eventOutbox.append(e.getUserId(), new EscalationEvent(e.getUserId(), r.getId(),
+                    m != null ? m.getId() : null, m != null ? m.getName() : null, stage, r.getFireAt()));
+            sentCounter.increment();
+            if (stage >= stages) {
+                escalationRepository.delete(e);
+            } else {
+                e.setStage(stage);
+                e.setDueAt(now.plus(stageInterval));
+                next.add(e);
+            }
+        }
+        return next;
+    }
+
+    private synchronized void load() {
+        Set<Integer> owned = leaseManager.ownedPartitions();
+        int partitions = leaseManager.getPartitionCount();
+        int count = 0;
+        if (!owned.isEmpty()) {
+            long afterId = 0;
+            List<Escalation> page;
+            do {
+                page = escalationRepository.findPageInPartitions(afterId, partitions, owned, PageRequest.of(0, loadPageSize));
+                for (Escalation e : page) {
+                    schedule(e.getReminderId(), e.getUserId(), e.getDueAt());
+                    afterId = e.getId();
+                }
+                count += page.size();
+            } while (page.size() == loadPageSize);
+        }
+        loaded = true;
+        log.debug("Loaded {} open escalations ({} tracked)", count, wheel.size());
+    }
+
+    private void schedule(Long reminderId, Long userId, Instant dueAt) {
+        if (!leaseManager.ownsUser(userId)) return;
+        if (!wheel.schedule(reminderId, dueAt.toEpochMilli())) {
+            log.warn("Escalation of reminder {} is due beyond the timing wheel horizon, skipping", reminderId);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
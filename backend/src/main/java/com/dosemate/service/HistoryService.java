@@ -1,12 +1,24 @@
 package com.dosemate.service;
 
+import com.dosemate.bulkhead.Bulkheads;
+import com.dosemate.dto.AdherenceSeries;
+import com.dosemate.dto.AdherenceTotals;
+import com.dosemate.dto.DailyAdherence;
+import com.dosemate.dto.HistoryCursor;
+import com.dosemate.dto.HistoryPage;
+import com.dosemate.dto.MedicineAdherence;
 import com.dosemate.model.History;
+import com.dosemate.model.Medicine;
 import com.dosemate.model.Reminder;
 import com.dosemate.model.ReminderStatus;
 import com.dosemate.model.User;
 import com.dosemate.repository.HistoryRepository;
 import com.dosemate.repository.ReminderRepository;
 import com.dosemate.repository.UserRepository;
+import com.dosemate.scheduling.ScheduleZones;
+import com.dosemate.websocket.EventOutbox;
+import com.dosemate.websocket.IntakeEvent;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,19 +28,33 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class HistoryService {
 
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int MAX_SERIES_DAYS = 3660;
+    // upper bound for "no end"; well inside the range of a SQL timestamp
+    private static final Instant END_OF_TIME = Instant.parse("9999-12-31T00:00:00Z");
+
     private final HistoryRepository historyRepository;
     private final ReminderRepository reminderRepository;
     private final UserRepository userRepository;
+    private final EventOutbox eventOutbox;
+    private final EscalationService escalationService;
+    private final Bulkheads bulkheads;
+    private final AdherenceRollupService adherenceRollupService;
 
-    public HistoryService(HistoryRepository historyRepository, ReminderRepository reminderRepository, UserRepository userRepository) {
+    public HistoryService(HistoryRepository historyRepository, ReminderRepository reminderRepository, UserRepository userRepository,
+                          EventOutbox eventOutbox, EscalationService escalationService, Bulkheads bulkheads,
+                          AdherenceRollupService adherenceRollupService) {
         this.historyRepository = historyRepository;
         this.reminderRepository = reminderRepository;
         this.userRepository = userRepository;
+        this.eventOutbox = eventOutbox;
+        this.escalationService = escalationService;
+        this.bulkheads = bulkheads;
+        this.adherenceRollupService = adherenceRollupService;
     }
 
     @Transactional
@@ -39,28 +65,19 @@ public class HistoryService {
         Instant now = Instant.now();
         Long latency = null;
         try {
-            if (reminder.getScheduledAt() != null) {
-                latency = Duration.between(reminder.getScheduledAt().toInstant(java.time.ZoneOffset.UTC), now).getSeconds();
+            if (reminder.getFireAt() != null) {
+                latency = Duration.between(reminder.getFireAt(), now).getSeconds();
             }
         } catch (Exception ignored) {}
 
-        History h = new History(null, reminder, status, now, source, latency, notes);
+        Medicine medicine = reminder.getMedicine();
+        History h = new History(null, reminder, medicine.getUser().getId(), medicine.getId(), status, now, source, latency, notes);
         History saved = historyRepository.save(h);
+        adherenceRollupService.record(medicine.getUser(), medicine.getId(), status, now, latency);
+        if (status == ReminderStatus.TAKEN) escalationService.cancel(reminderId);
         
-        // Broadcast event via WebSocket
-        try {
-            Map<String, Object> event = new HashMap<>();
-            event.put("type", "INTAKE_RECORDED");
-            event.put("reminderId", reminderId);
-            event.put("medicineId", reminder.getMedicine().getId());
-            event.put("medicineName", reminder.getMedicine().getName());
-            event.put("status", status);
-            event.put("timestamp", now);
-            event.put("latencySeconds", latency);
-            com.dosemate.websocket.ReminderWebSocketHandler.broadcastAdherence(event);
-        } catch (Exception e) {
-            System.err.println("Failed to broadcast WebSocket event: " + e.getMessage());
-        }
+        // Pushed to the user and caregivers over WebSocket once this transaction commits
+        eventOutbox.append(h.getUserId(), new IntakeEvent(reminderId, medicine.getId(), medicine.getName(), status, now, latency));
         
         return saved;
     }
@@ -68,105 +85,134 @@ public class HistoryService {
     public List<History> getUserHistory(String userEmail) {
         User user = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
-        
-        return historyRepository.findAll().stream()
-                .filter(h -> h.getReminder() != null && h.getReminder().getMedicine() != null &&
-                        h.getReminder().getMedicine().getUser() != null &&
-                        h.getReminder().getMedicine().getUser().getId().equals(user.getId()))
-                .sorted(Comparator.comparing(History::getRecordedAt).reversed())
-                .collect(Collectors.toList());
+        return historyRepository.findAllForUser(user.getId());
     }
 
-    public List<History> getUserHistoryByDateRange(String userEmail, LocalDateTime startDate, LocalDateTime endDate) {
+    /** The user's history, newest first, one page of at most {@code limit} rows after {@code cursor}. */
+    // a null status returns entries of every status
+    public HistoryPage getUserHistoryPage(String userEmail, ReminderStatus status, HistoryCursor cursor, int limit) {
+        User user = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        return page(user, status, Instant.EPOCH, END_OF_TIME, cursor, limit);
+    }
+
+    public HistoryPage getUserHistoryByDateRange(String userEmail, LocalDateTime startDate, LocalDateTime endDate,
+                                                 HistoryCursor cursor, int limit) {
         User user = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
         
-        Instant startInstant = startDate.atZone(java.time.ZoneId.systemDefault()).toInstant();
-        Instant endInstant = endDate.atZone(java.time.ZoneId.systemDefault()).toInstant();
-        
-        return historyRepository.findAll().stream()
-                .filter(h -> h.getReminder() != null && h.getReminder().getMedicine() != null &&
-                        h.getReminder().getMedicine().getUser().getId().equals(user.getId()) &&
-                        h.getRecordedAt().isAfter(startInstant) &&
-                        h.getRecordedAt().isBefore(endInstant))
-                .sorted(Comparator.comparing(History::getRecordedAt).reversed())
-                .collect(Collectors.toList());
+        // the range is given on the user's wall clock
+        java.time.ZoneId zone = ScheduleZones.of(user);
+        Instant startInstant = startDate.atZone(zone).toInstant();
+        Instant endInstant = endDate.atZone(zone).toInstant();
+        return page(user, null, startInstant, endInstant, cursor, limit);
     }
 
     public List<History> getHistoryByMedicine(Long medicineId, String userEmail) {
         User user = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
-        
-        return historyRepository.findAll().stream()
-                .filter(h -> h.getReminder() != null && h.getReminder().getMedicine() != null &&
-                        h.getReminder().getMedicine().getId().equals(medicineId) &&
-                        h.getReminder().getMedicine().getUser().getId().equals(user.getId()))
-                .sorted(Comparator.comparing(History::getRecordedAt).reversed())
-                .collect(Collectors.toList());
+        return historyRepository.findAllForMedicine(medicineId, user.getId());
+    }
+
+    // Keyset page over (recordedAt, id): the database seeks straight to the cursor, so the cost of a page
+    // does not grow with how far back it is. One extra row is read to tell whether another page follows.
+    private HistoryPage page(User user, ReminderStatus status, Instant from, Instant to, HistoryCursor cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Instant beforeAt = to;
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null && cursor.recordedAt().isBefore(to)) {
+            beforeAt = cursor.recordedAt();
+            beforeId = cursor.id();
+        }
+        PageRequest request = PageRequest.of(0, size + 1);
+        List<History> rows = status == null
+                ? historyRepository.findPageForUser(user.getId(), from, beforeAt, beforeId, request)
+                : historyRepository.findPageForUserWithStatus(user.getId(), status, from, beforeAt, beforeId, request);
+        if (rows.size() <= size) return new HistoryPage(rows, null);
+        List<History> items = rows.subList(0, size);
+        History last = items.get(size - 1);
+        return new HistoryPage(items, new HistoryCursor(last.getRecordedAt(), last.getId()));
     }
 
+    // The statistics run in the analytics bulkhead so they cannot crowd out reminder delivery.
     public Map<String, Object> getAdherenceStats(String userEmail) {
-        List<History> history = getUserHistory(userEmail);
-        
-        long totalReminders = history.size();
-        long takenCount = history.stream().filter(h -> h.getStatus() == ReminderStatus.TAKEN).count();
-        long missedCount = history.stream().filter(h -> h.getStatus() == ReminderStatus.MISSED).count();
-        
-        double adherenceRate = totalReminders > 0 ? (takenCount * 100.0 / totalReminders) : 0;
-        double avgLatency = history.stream()
-                .filter(h -> h.getLatencySeconds() != null && h.getStatus() == ReminderStatus.TAKEN)
-                .mapToLong(History::getLatencySeconds)
-                .average()
-                .orElse(0);
+        return bulkheads.analytics().call(() -> computeAdherenceStats(userEmail));
+    }
+
+    private Map<String, Object> computeAdherenceStats(String userEmail) {
+        User user = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        AdherenceTotals totals = adherenceRollupService.totals(user.getId());
 
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalReminders", totalReminders);
-        stats.put("taken", takenCount);
-        stats.put("missed", missedCount);
-        stats.put("adherenceRate", String.format("%.2f", adherenceRate) + "%");
-        stats.put("averageLatencySeconds", avgLatency);
+        stats.put("totalReminders", totals.total());
+        stats.put("taken", totals.taken());
+        stats.put("missed", totals.missed());
+        stats.put("adherenceRate", String.format("%.2f", totals.adherenceRate()) + "%");
+        stats.put("averageLatencySeconds", totals.averageLatencySeconds());
         
         return stats;
     }
 
     public Map<String, Object> getAdherenceStatsByMedicine(Long medicineId, String userEmail) {
-        List<History> medicineHistory = getHistoryByMedicine(medicineId, userEmail);
-        
-        long totalReminders = medicineHistory.size();
-        long takenCount = medicineHistory.stream().filter(h -> h.getStatus() == ReminderStatus.TAKEN).count();
-        long missedCount = medicineHistory.stream().filter(h -> h.getStatus() == ReminderStatus.MISSED).count();
-        
-        double adherenceRate = totalReminders > 0 ? (takenCount * 100.0 / totalReminders) : 0;
+        return bulkheads.analytics().call(() -> computeAdherenceStatsByMedicine(medicineId, userEmail));
+    }
+
+    private Map<String, Object> computeAdherenceStatsByMedicine(Long medicineId, String userEmail) {
+        User user = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        AdherenceTotals totals = adherenceRollupService.totals(user.getId(), medicineId);
 
         Map<String, Object> stats = new HashMap<>();
         stats.put("medicineId", medicineId);
-        stats.put("totalReminders", totalReminders);
-        stats.put("taken", takenCount);
-        stats.put("missed", missedCount);
-        stats.put("adherenceRate", String.format("%.2f", adherenceRate) + "%");
+        stats.put("totalReminders", totals.total());
+        stats.put("taken", totals.taken());
+        stats.put("missed", totals.missed());
+        stats.put("adherenceRate", String.format("%.2f", totals.adherenceRate()) + "%");
         
         return stats;
     }
 
+    /** {@link #getAdherenceStatsByMedicine} for every medicine the user owns, plus its name, in one query. */
+    public List<Map<String, Object>> getAdherenceStatsForAllMedicines(String userEmail) {
+        return bulkheads.analytics().call(() -> computeAdherenceStatsForAllMedicines(userEmail));
+    }
+
+    private List<Map<String, Object>> computeAdherenceStatsForAllMedicines(String userEmail) {
+        User user = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (MedicineAdherence m : adherenceRollupService.totalsByMedicine(user.getId())) {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("medicineId", m.medicineId());
+            stats.put("name", m.name());
+            stats.put("totalReminders", m.total());
+            stats.put("taken", m.taken());
+            stats.put("missed", m.missed());
+            stats.put("adherenceRate", String.format("%.2f", m.adherenceRate()) + "%");
+            result.add(stats);
+        }
+        return result;
+    }
+
     public List<Map<String, Object>> getWeeklyAdherence(String userEmail) {
-        List<History> history = getUserHistory(userEmail);
-        List<Map<String, Object>> weeklyData = new ArrayList<>();
+        return bulkheads.analytics().call(() -> computeWeeklyAdherence(userEmail));
+    }
 
-        for (int i = 6; i >= 0; i--) {
-            LocalDate date = LocalDate.now().minusDays(i);
-            Instant dayStart = date.atStartOfDay(java.time.ZoneId.systemDefault()).toInstant();
-            Instant dayEnd = date.plusDays(1).atStartOfDay(java.time.ZoneId.systemDefault()).toInstant();
+    private List<Map<String, Object>> computeWeeklyAdherence(String userEmail) {
+        User user = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        LocalDate today = LocalDate.now(ScheduleZones.of(user));
+        AdherenceSeries series = series(user, today.minusDays(6), today, AdherenceSeries.Granularity.DAY, null);
 
-            long dayCount = history.stream()
-                    .filter(h -> h.getRecordedAt().isAfter(dayStart) && h.getRecordedAt().isBefore(dayEnd))
-                    .count();
-            long takenCount = history.stream()
-                    .filter(h -> h.getRecordedAt().isAfter(dayStart) && h.getRecordedAt().isBefore(dayEnd)
-                            && h.getStatus() == ReminderStatus.TAKEN)
-                    .count();
+        List<Map<String, Object>> weeklyData = new ArrayList<>();
+        for (int i = 0; i < series.buckets().size(); i++) {
+            long dayCount = series.total()[i];
+            long takenCount = series.taken()[i];
 
             Map<String, Object> dayData = new HashMap<>();
-            dayData.put("date", date);
+            dayData.put("date", series.buckets().get(i));
             dayData.put("total", dayCount);
             dayData.put("taken", takenCount);
             dayData.put("percentage", dayCount > 0 ? (takenCount * 100 / dayCount) : 0);
@@ -175,4 +221,54 @@ public class HistoryService {
 
         return weeklyData;
     }
+
+    /**
+     * Adherence over [from, to] (days on the user's calendar, inclusive) in buckets of {@code granularity},
+     * for one medicine or, when {@code medicineId} is null, all of them. Reads at most one rollup row per day.
+     */
+    public AdherenceSeries getAdherenceSeries(String userEmail, LocalDate from, LocalDate to,
+                                              AdherenceSeries.Granularity granularity, Long medicineId) {
+        return bulkheads.analytics().call(() -> computeAdherenceSeries(userEmail, from, to, granularity, medicineId));
+    }
+
+    private AdherenceSeries computeAdherenceSeries(String userEmail, LocalDate from, LocalDate to,
+                                                   AdherenceSeries.Granularity granularity, Long medicineId) {
+        User user = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        // the last 7 days unless told otherwise
+        LocalDate end = to != null ? to : LocalDate.now(ScheduleZones.of(user));
+        LocalDate start = from != null ? from : end.minusDays(6);
+        if (start.isAfter(end)) throw new IllegalArgumentException("from must not be after to");
+        if (ChronoUnit.DAYS.between(start, end) >= MAX_SERIES_DAYS) {
+            throw new IllegalArgumentException("The range is limited to " + MAX_SERIES_DAYS + " days");
+        }
+        return series(user, start, end, granularity, medicineId);
+    }
+
+    // One pass over the daily rollup rows, adding each into the array slot of its bucket.
+    private AdherenceSeries series(User user, LocalDate from, LocalDate to, AdherenceSeries.Granularity granularity, Long medicineId) {
+        LocalDate first = granularity.start(from);
+        List<LocalDate> buckets = new ArrayList<>();
+        for (LocalDate b = first; !b.isAfter(to); b = granularity.next(b)) buckets.add(b);
+
+        int n = buckets.size();
+        long[] total = new long[n];
+        long[] taken = new long[n];
+        long[] missed = new long[n];
+        long[] latencySum = new long[n];
+        long[] latencyCount = new long[n];
+        for (DailyAdherence d : adherenceRollupService.daily(user.getId(), medicineId, from, to)) {
+            int i = granularity.index(first, d.day());
+            total[i] += d.total();
+            taken[i] += d.taken();
+            missed[i] += d.missed();
+            latencySum[i] += d.latencySum();
+            latencyCount[i] += d.latencyCount();
+        }
+        double[] averageLatency = new double[n];
+        for (int i = 0; i < n; i++) {
+            averageLatency[i] = latencyCount[i] > 0 ? (double) latencySum[i] / latencyCount[i] : 0;
+        }
+        return new AdherenceSeries(granularity, from, to, buckets, total, taken, missed, averageLatency);
+    }
 }
@@ -7,9 +7,11 @@ import com.dosemate.model.User;
 import com.dosemate.repository.MedicineRepository;
 import com.dosemate.repository.UserRepository;
 import com.dosemate.repository.ReminderRepository;
+import com.dosemate.scheduling.MedicineSchedules;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -19,12 +21,16 @@ public class MedicineService {
     private final UserRepository userRepository;
     private final ReminderRepository reminderRepository;
     private final com.dosemate.repository.HistoryRepository historyRepository;
+    private final MedicineSchedules medicineSchedules;
+    private final AdherenceRollupService adherenceRollupService;
 
-    public MedicineService(MedicineRepository medicineRepository, UserRepository userRepository, ReminderRepository reminderRepository, com.dosemate.repository.HistoryRepository historyRepository) {
+    public MedicineService(MedicineRepository medicineRepository, UserRepository userRepository, ReminderRepository reminderRepository, com.dosemate.repository.HistoryRepository historyRepository, MedicineSchedules medicineSchedules, AdherenceRollupService adherenceRollupService) {
         this.medicineRepository = medicineRepository;
         this.userRepository = userRepository;
         this.reminderRepository = reminderRepository;
         this.historyRepository = historyRepository;
+        this.medicineSchedules = medicineSchedules;
+        this.adherenceRollupService = adherenceRollupService;
     }
 
     @Transactional
@@ -46,10 +52,13 @@ public class MedicineService {
         medicine.setReminderTimes(dto.getReminderTimes());
         medicine.setStock(dto.getStock() != null ? dto.getStock() : 0);
         medicine.setRefillThreshold(dto.getRefillThreshold() != null ? dto.getRefillThreshold() : 10);
+        medicine.setEscalateAfterMinutes(dto.getEscalateAfterMinutes());
         medicine.setImageUrls(dto.getImageUrls());
         medicine.setTags(dto.getTags());
         medicine.setNotes(dto.getNotes());
         medicine.setActive(true);
+        // compiling the schedule also rejects frequencies we cannot interpret
+        medicine.setNextFireAt(medicineSchedules.nextFireAt(medicine, Instant.now()));
         
         return MedicineDTO.fromEntity(medicineRepository.save(medicine));
     }
@@ -100,10 +109,12 @@ public class MedicineService {
         existing.setReminderTimes(updated.getReminderTimes());
         existing.setStock(updated.getStock() != null ? updated.getStock() : existing.getStock());
         existing.setRefillThreshold(updated.getRefillThreshold() != null ? updated.getRefillThreshold() : existing.getRefillThreshold());
+        existing.setEscalateAfterMinutes(updated.getEscalateAfterMinutes() != null ? updated.getEscalateAfterMinutes() : existing.getEscalateAfterMinutes());
         existing.setImageUrls(updated.getImageUrls());
         existing.setTags(updated.getTags());
         existing.setNotes(updated.getNotes());
         existing.setActive(updated.isActive());
+        existing.setNextFireAt(medicineSchedules.nextFireAt(existing, Instant.now()));
         
         return MedicineDTO.fromEntity(medicineRepository.save(existing));
     }
@@ -134,6 +145,8 @@ public class MedicineService {
             // log and continue with deletion; let GlobalExceptionHandler handle if something goes wrong
             System.err.println("Warning: failed to delete related reminders/history: " + e.getMessage());
         }
+        // its history is gone, so its rollup counts go too
+        adherenceRollupService.forgetMedicine(existing.getUser().getId(), existing.getId());
         medicineRepository.delete(existing);
     }
 
@@ -3,23 +3,34 @@ package com.dosemate.service;
 import com.dosemate.dto.ChangePasswordRequest;
 import com.dosemate.dto.UpdateProfileRequest;
 import com.dosemate.dto.UserResponse;
+import com.dosemate.model.Medicine;
 import com.dosemate.model.User;
+import com.dosemate.repository.MedicineRepository;
 import com.dosemate.repository.UserRepository;
+import com.dosemate.scheduling.MedicineSchedules;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+
 @Slf4j
 @Service
 public class ProfileService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final MedicineRepository medicineRepository;
+    private final MedicineSchedules medicineSchedules;
 
-    public ProfileService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public ProfileService(UserRepository userRepository, PasswordEncoder passwordEncoder, MedicineRepository medicineRepository, MedicineSchedules medicineSchedules) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.medicineRepository = medicineRepository;
+        this.medicineSchedules = medicineSchedules;
     }
 
     public UserResponse getUserProfile(String email) {
@@ -56,6 +67,22 @@ public class ProfileService {
         if (req.getProfilePictureUrl() != null) {
             user.setProfilePictureUrl(req.getProfilePictureUrl());
         }
+        if (req.getTimeZone() != null && !req.getTimeZone().isBlank()) {
+            String zone;
+            try {
+                zone = ZoneId.of(req.getTimeZone().trim()).getId();
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Unknown time zone: " + req.getTimeZone());
+            }
+            if (!zone.equals(user.getTimeZone())) {
+                user.setTimeZone(zone);
+                // upcoming doses move with the user's wall clock
+                Instant now = Instant.now();
+                for (Medicine m : medicineRepository.findByUser(user)) {
+                    m.setNextFireAt(medicineSchedules.nextFireAt(m, now));
+                }
+            }
+        }
 
         User updated = userRepository.save(user);
         log.info("Profile updated successfully for user: {}", email);
@@ -1,64 +1,321 @@
 package com.dosemate.service;
 
+import com.dosemate.bulkhead.Bulkheads;
+import com.dosemate.model.Medicine;
 import com.dosemate.model.Reminder;
 import com.dosemate.model.ReminderStatus;
 import com.dosemate.repository.ReminderRepository;
-import com.dosemate.websocket.ReminderWebSocketHandler;
-import org.springframework.scheduling.annotation.Scheduled;
+import com.dosemate.scheduling.CompiledSchedule;
+import com.dosemate.scheduling.HierarchicalTimingWheel;
+import com.dosemate.scheduling.PartitionLeaseManager;
+import com.dosemate.scheduling.PartitionOwnershipChangedEvent;
+import com.dosemate.scheduling.ReminderClaimQueue;
+import com.dosemate.scheduling.ScheduleZones;
+import com.dosemate.websocket.EventOutbox;
+import com.dosemate.websocket.ReminderEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import org.springframework.dao.DataIntegrityViolationException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Fires PENDING reminders from an in-memory timing wheel instead of polling the database.
+ *
+ * The wheel mirrors every PENDING reminder whose {@code fireAt} is before {@code loadedUntil}. It is filled from the
+ * database at startup and whenever the remaining preload window drops below half, and is kept
+ * current by {@link #track(Reminder)} when reminders are created, snoozed or change status.
+ *
+ * Only reminders of users in partitions leased by this node are tracked. While other nodes share the
+ * partitions, reminders they change are picked up by a short poll on {@code reminders.updated_at}.
+ *
+ * The wheel only says when something is due. Delivery is done by {@code app.dispatcher.workers} workers
+ * that drain the due set through {@link ReminderClaimQueue}, so they never deliver the same reminder
+ * twice; claims left unacknowledged are picked up again after the visibility timeout.
+ *
+ * Delivery is the one time-critical job, so it does not share Spring's scheduler: the tick has its own
+ * thread and the workers their own pool, both at high priority. A tick that finds due reminders waiting
+ * behind a round still running reports a backlog to {@link Bulkheads}, which then sheds analytics and
+ * maintenance work until delivery catches up.
+ */
+@Slf4j
 @Service
 public class ReminderDispatcherService {
 
+    private static final Duration CHANGE_SCAN_INTERVAL = Duration.ofSeconds(5);
+
     private final ReminderRepository reminderRepository;
+    private final PartitionLeaseManager leaseManager;
+    private final ReminderClaimQueue claimQueue;
+    private final EventOutbox eventOutbox;
+    private final EscalationService escalationService;
+    private final Bulkheads bulkheads;
+    private final Duration preloadWindow;
+    private final int workerCount;
+    private final int claimBatchSize;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService ticker;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(1000, 64, 3, System.currentTimeMillis());
+    private volatile boolean ready;
+    private volatile Instant loadedUntil;
+    private volatile Instant changesScannedAt;
+    private volatile boolean wakeRequested;
+    private volatile long nextRecoveryMillis;
 
-    public ReminderDispatcherService(ReminderRepository reminderRepository) {
+    public ReminderDispatcherService(ReminderRepository reminderRepository,
+                                     PartitionLeaseManager leaseManager,
+                                     ReminderClaimQueue claimQueue,
+                                     EventOutbox eventOutbox,
+                                     EscalationService escalationService,
+                                     Bulkheads bulkheads,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.dispatcher.preload-minutes:10}") long preloadMinutes,
+                                     @Value("${app.dispatcher.workers:2}") int workerCount,
+                                     @Value("${app.dispatcher.claim-batch-size:100}") int claimBatchSize) {
         this.reminderRepository = reminderRepository;
+        this.leaseManager = leaseManager;
+        this.claimQueue = claimQueue;
+        this.eventOutbox = eventOutbox;
+        this.escalationService = escalationService;
+        this.bulkheads = bulkheads;
+        this.preloadWindow = Duration.ofMinutes(preloadMinutes);
+        this.workerCount = Math.max(1, workerCount);
+        this.claimBatchSize = Math.max(1, claimBatchSize);
+        this.workers = ExecutorServiceMetrics.monitor(meterRegistry,
+                Executors.newFixedThreadPool(this.workerCount, urgentThreads("reminder-dispatch-")), "dispatch");
+        this.ticker = Executors.newSingleThreadScheduledExecutor(urgentThreads("reminder-tick-"));
     }
 
-    // Runs every 30 seconds and dispatches due reminders persisted in DB.
-    @Scheduled(fixedRate = 30000)
-    @Transactional
-    public void dispatchDueReminders() {
-        LocalDateTime now = LocalDateTime.now();
-        List<Reminder> due = reminderRepository.findByScheduledAtBeforeAndStatus(now.plusSeconds(1), ReminderStatus.PENDING);
-        if (due.isEmpty()) return;
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        workers.shutdown();
+    }
 
-        for (Reminder r : due) {
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadWheel() {
+        ready = true;
+        refill(Instant.now());
+        ticker.scheduleAtFixedRate(() -> {
             try {
-                Map<String, Object> event = new HashMap<>();
-                event.put("reminderId", r.getId());
-                if (r.getMedicine() != null) {
-                    event.put("medicineId", r.getMedicine().getId());
-                    event.put("medicineName", r.getMedicine().getName());
-                    event.put("dosage", r.getMedicine().getDosage());
-                    event.put("unit", r.getMedicine().getUnit());
+                dispatchDueReminders();
+            } catch (Exception e) {
+                // an escaping exception would cancel the schedule
+                log.error("Reminder dispatch tick failed: {}", e.getMessage());
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    // Partitions moved between nodes: forget everything and reload on the next tick.
+    @EventListener
+    public synchronized void onOwnershipChanged(PartitionOwnershipChangedEvent event) {
+        wheel.clear();
+        loadedUntil = null;
+    }
+
+    // Runs every second on the tick thread; the database is only read when something is due or the wheel needs refilling.
+    public void dispatchDueReminders() {
+        if (!ready) return;
+        Instant now = Instant.now();
+        if (loadedUntil == null || !now.plus(preloadWindow.dividedBy(2)).isBefore(loadedUntil)) {
+            refill(now);
+        } else if (!leaseManager.ownsAllPartitions()) {
+            scanChanges();
+        }
+
+        long nowMillis = System.currentTimeMillis();
+        if (wheel.advance(nowMillis, id -> { }) > 0) {
+            wakeRequested = true;
+        }
+        if (nowMillis >= nextRecoveryMillis) {
+            // lapsed claims are not in the wheel any more; look for them once per visibility timeout
+            nextRecoveryMillis = nowMillis + claimQueue.getVisibilityTimeout().toMillis();
+            wakeRequested = true;
+        }
+        // a round that is still running keeps the request for the next tick
+        if (wakeRequested && activeWorkers.get() == 0) {
+            wakeRequested = false;
+            activeWorkers.set(workerCount);
+            for (int i = 0; i < workerCount; i++) {
+                workers.execute(this::drain);
+            }
+        }
+        bulkheads.reportDispatchBacklog(wakeRequested);
+    }
+
+    /**
+     * Mirrors a created or updated reminder into the wheel once the surrounding transaction commits:
+     * PENDING reminders are (re)scheduled at their {@code fireAt}, anything else is dropped.
+     */
+    public void track(Reminder reminder) {
+        Long id = reminder.getId();
+        if (id == null) return;
+        boolean pending = reminder.getStatus() == ReminderStatus.PENDING && reminder.getFireAt() != null;
+        long deadline = pending ? reminder.getFireAt().toEpochMilli() : 0L;
+        Long userId = userIdOf(reminder);
+        Runnable apply = () -> {
+            if (pending && leaseManager.ownsUser(userId)) {
+                wheel.schedule(id, deadline);
+            } else {
+                wheel.cancel(id);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    private synchronized void refill(Instant now) {
+        Set<Integer> owned = leaseManager.ownedPartitions();
+        int partitions = leaseManager.getPartitionCount();
+        Instant until = now.plus(preloadWindow);
+        List<Reminder> upcoming;
+        if (owned.isEmpty()) {
+            upcoming = List.of();
+        } else if (loadedUntil == null) {
+            upcoming = reminderRepository.findByStatusAndFireAtBeforeInPartitions(ReminderStatus.PENDING, until, partitions, owned);
+        } else {
+            upcoming = reminderRepository.findByStatusAndFireAtBetweenInPartitions(ReminderStatus.PENDING, loadedUntil, until, partitions, owned);
+        }
+        for (Reminder r : upcoming) {
+            wheel.schedule(r.getId(), r.getFireAt().toEpochMilli());
+        }
+        if (loadedUntil == null) changesScannedAt = now;
+        loadedUntil = until;
+        log.debug("Timing wheel refilled with {} reminders up to {} ({} tracked)", upcoming.size(), until, wheel.size());
+    }
+
+    private synchronized void scanChanges() {
+        Instant now = Instant.now();
+        if (changesScannedAt != null && now.isBefore(changesScannedAt.plus(CHANGE_SCAN_INTERVAL))) return;
+        Set<Integer> owned = leaseManager.ownedPartitions();
+        if (owned.isEmpty()) return;
+        // overlap the previous scan a little so commits racing with it are not skipped
+        Instant since = changesScannedAt != null ? changesScannedAt.minusSeconds(2) : now.minus(CHANGE_SCAN_INTERVAL);
+        for (Reminder r : reminderRepository.findUpdatedSinceInPartitions(since, leaseManager.getPartitionCount(), owned)) {
+            if (r.getStatus() == ReminderStatus.PENDING && r.getFireAt() != null) {
+                wheel.schedule(r.getId(), r.getFireAt().toEpochMilli());
+            } else {
+                wheel.cancel(r.getId());
+            }
+        }
+        changesScannedAt = now;
+    }
+
+    private static CustomizableThreadFactory urgentThreads(String prefix) {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory(prefix);
+        factory.setThreadPriority(Thread.MAX_PRIORITY);
+        return factory;
+    }
+
+    private void drain() {
+        try {
+            ReminderClaimQueue.Claim claim;
+            do {
+                claim = claimQueue.claim(Instant.now().plusSeconds(1), claimBatchSize);
+                for (Reminder r : claim.reminders()) {
+                    deliver(claim, r);
                 }
-                event.put("scheduledAt", r.getScheduledAt() != null ? r.getScheduledAt().toString() : null);
-                ReminderWebSocketHandler.broadcastReminder(event);
-                // mark as TRIGGERED so we do not repeatedly notify
-                r.setStatus(ReminderStatus.TRIGGERED);
-                try {
-                    reminderRepository.save(r);
-                } catch (DataIntegrityViolationException dive) {
-                    // Some DB schemas may not include TRIGGERED in allowed values (check constraint).
-                    // Log and continue without failing the scheduled task.
-                    System.err.println("Warning: could not persist TRIGGERED status for reminder " + r.getId() + ": " + dive.getMessage());
-                    // fallback: do not change persistent status to avoid constraint; continue dispatching
+            } while (claim.reminders().size() == claimBatchSize);
+        } catch (Exception e) {
+            log.error("Reminder dispatch worker failed: {}", e.getMessage());
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    private void deliver(ReminderClaimQueue.Claim claim, Reminder r) {
+        try {
+            Medicine m = r.getMedicine();
+            ReminderEvent event = new ReminderEvent(r.getId(),
+                    m != null ? m.getId() : null,
+                    m != null ? m.getName() : null,
+                    m != null ? m.getDosage() : null,
+                    m != null ? m.getUnit() : null,
+                    r.getScheduledAt().toString(),
+                    r.getFireAt(),
+                    r.getDeliveryChannel());
+            Long userId = userIdOf(r);
+            // mark as TRIGGERED so we do not repeatedly notify; the event goes out once that commits,
+            // and caregivers are alerted if the dose is still not taken after the medicine's threshold
+            try {
+                if (claimQueue.acknowledge(claim, r, () -> {
+                    eventOutbox.append(userId, event);
+                    escalationService.open(r, userId);
+                })) {
+                    scheduleRepeat(r);
+                } else {
+                    log.debug("Claim on reminder {} was lost before it was acknowledged", r.getId());
                 }
-            } catch (IOException e) {
-                System.err.println("Failed to broadcast reminder " + r.getId() + ": " + e.getMessage());
-            } catch (Exception e) {
-                System.err.println("Unexpected error dispatching reminder " + r.getId() + ": " + e.getMessage());
+            } catch (DataIntegrityViolationException dive) {
+                // Some DB schemas may not include TRIGGERED in allowed values (check constraint).
+                // Log and continue without failing the worker.
+                log.warn("Could not persist TRIGGERED status for reminder {}: {}", r.getId(), dive.getMessage());
             }
+        } catch (Exception e) {
+            // left claimed; it is delivered again once the claim lapses
+            log.error("Unexpected error dispatching reminder {}: {}", r.getId(), e.getMessage());
         }
     }
+
+    // Reminders with a repeat pattern get their next occurrence once the current one has fired.
+    private void scheduleRepeat(Reminder r) {
+        if (r.getRepeatPattern() == null) return;
+        try {
+            CompiledSchedule schedule = CompiledSchedule.forRepeat(r.getRepeatPattern(), r.getScheduledAt());
+            if (schedule == null) return;
+            ZoneId zone = ScheduleZones.of(r.getZoneId());
+            LocalDateTime now = ScheduleZones.toLocal(Instant.now(), zone);
+            LocalDateTime next = schedule.nextOccurrence(r.getScheduledAt().isAfter(now) ? r.getScheduledAt() : now);
+            if (next == null) return;
+
+            Reminder following = new Reminder();
+            following.setMedicine(r.getMedicine());
+            following.setScheduledAt(next);
+            following.setFireAt(ScheduleZones.toInstant(next, zone));
+            following.setStatus(ReminderStatus.PENDING);
+            following.setRepeatPattern(r.getRepeatPattern());
+            following.setZoneId(r.getZoneId());
+            following.setDeliveryChannel(r.getDeliveryChannel());
+            reminderRepository.saveAllIfAbsent(List.of(following)).forEach(this::track);
+        } catch (DataIntegrityViolationException e) {
+            // the materializer or another node inserted the same slot after our check
+            log.debug("Next occurrence of reminder {} was already scheduled", r.getId());
+        } catch (IllegalArgumentException e) {
+            log.warn("Could not schedule the next occurrence of reminder {}: {}", r.getId(), e.getMessage());
+        }
+    }
+
+    private static Long userIdOf(Reminder reminder) {
+        return reminder.getMedicine() != null && reminder.getMedicine().getUser() != null
+                ? reminder.getMedicine().getUser().getId()
+                : null;
+    }
 }
@@ -0,0 +1,326 @@
+package com.dosemate.service;
+
+import com.dosemate.bulkhead.BulkheadFullException;
+import com.dosemate.bulkhead.Bulkheads;
+import com.dosemate.model.Medicine;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.repository.MedicineRepository;
+import com.dosemate.repository.ReminderRepository;
+import com.dosemate.scheduling.MedicineSchedules;
+import com.dosemate.scheduling.PartitionLeaseManager;
+import com.dosemate.scheduling.ScheduleZones;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Materializes the doses due in the next {@code app.materializer.window-minutes} as PENDING reminders. Only
+ * medicines whose nextFireAt falls inside the window are loaded, so the cost follows the number of due doses.
+ * Only users in partitions leased by this node are handled. Doses are expanded in the user's time zone and
+ * stored with both the wall-clock scheduledAt and the UTC fireAt.
+ *
+ * A pass covers every scheduler partition this node owns. Partitions share no medicines, so they are
+ * materialized side by side on {@code app.materializer.workers} threads: each walks its partition's due
+ * medicines in id order, {@code app.materializer.chunk-size} at a time, and commits each chunk in its own
+ * short transaction with batched inserts; the last committed id is the partition's checkpoint. Each worker
+ * holds a connection, so each takes its own maintenance bulkhead slot and the pool is capped at the
+ * bulkhead's {@code max-concurrent}, which defaults to the worker count; a partition turned away by the
+ * bulkhead waits for the next run. A run stops
+ * once it has used {@code app.materializer.budget-ms} and the next run resumes every unfinished partition
+ * from its checkpoint, so no run holds locks or connections for long. Runs never overlap: a tick that finds
+ * the previous run still going is skipped.
+ *
+ * {@code dosemate.materializer.lag} is how long ago the last completed pass started; it keeps growing while
+ * passes are carried over. {@code dosemate.materializer.headroom} is how far ahead of now that pass reached;
+ * once it turns negative, doses are being reached after they were due.
+ */
+@Slf4j
+@Service
+public class ReminderMaterializerService {
+
+    // Checkpoints are written by the partition's worker and read by the next run.
+    private record Pass(Instant startedAt, Instant windowEnd, Map<Integer, Long> checkpoints, Set<Integer> finished) {
+        Pass(Instant startedAt, Instant windowEnd) {
+            this(startedAt, windowEnd, new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    private record Chunk(int expanded, int saved) {
+    }
+
+    private final ReminderRepository reminderRepository;
+    private final MedicineRepository medicineRepository;
+    private final ReminderDispatcherService reminderDispatcherService;
+    private final PartitionLeaseManager leaseManager;
+    private final MedicineSchedules medicineSchedules;
+    private final Bulkheads bulkheads;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration window;
+    private final int chunkSize;
+    private final Duration budget;
+    private final ExecutorService workers;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter materializedCounter;
+    private final Counter duplicatesSuppressedCounter;
+    private final Counter overlapsSkippedCounter;
+    private final Counter carriedOverCounter;
+    private final Timer chunkTimer;
+    private volatile Pass pass; // in progress; only changed by the run holding the running flag
+    private volatile Instant completedPassStartedAt = Instant.now();
+    private volatile Instant completedPassWindowEnd = Instant.now();
+
+    public ReminderMaterializerService(ReminderRepository reminderRepository,
+                                       MedicineRepository medicineRepository,
+                                       ReminderDispatcherService reminderDispatcherService,
+                                       PartitionLeaseManager leaseManager,
+                                       MedicineSchedules medicineSchedules,
+                                       Bulkheads bulkheads,
+                                       PlatformTransactionManager transactionManager,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${app.materializer.window-minutes:5}") long windowMinutes,
+                                       @Value("${app.materializer.chunk-size:500}") int chunkSize,
+                                       @Value("${app.materializer.budget-ms:8000}") long budgetMs,
+                                       @Value("${app.materializer.workers:16}") int workerCount) {
+        this.reminderRepository = reminderRepository;
+        this.medicineRepository = medicineRepository;
+        this.reminderDispatcherService = reminderDispatcherService;
+        this.leaseManager = leaseManager;
+        this.medicineSchedules = medicineSchedules;
+        this.bulkheads = bulkheads;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.window = Duration.ofMinutes(windowMinutes);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.budget = Duration.ofMillis(Math.max(0, budgetMs));
+        int poolSize = Math.max(1, Math.min(workerCount, bulkheads.maintenance().getMaxConcurrent()));
+        if (poolSize < workerCount) {
+            log.info("Materializing with {} workers, the maintenance bulkhead's limit", poolSize);
+        }
+        this.workers = ExecutorServiceMetrics.monitor(meterRegistry,
+                Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("materializer-")),
+                "materializer");
+        this.materializedCounter = Counter.builder("dosemate.reminders.materialized")
+                .description("Reminder rows inserted by the materializer")
+                .register(meterRegistry);
+        this.duplicatesSuppressedCounter = Counter.builder("dosemate.reminders.duplicates.suppressed")
+                .description("Materialized reminders skipped because their (medicine, scheduledAt) slot already existed")
+                .register(meterRegistry);
+        this.overlapsSkippedCounter = Counter.builder("dosemate.materializer.overlaps.skipped")
+                .description("Materializer ticks skipped because the previous run was still going")
+                .register(meterRegistry);
+        this.carriedOverCounter = Counter.builder("dosemate.materializer.carried.over")
+                .description("Materializer runs that spent their budget and left the pass to the next run")
+                .register(meterRegistry);
+        this.chunkTimer = Timer.builder("dosemate.materializer.chunk")
+                .description("Time per materializer chunk, including its commit")
+                .register(meterRegistry);
+        Gauge.builder("dosemate.materializer.lag", this,
+                        m -> Duration.between(m.completedPassStartedAt, Instant.now()).toMillis() / 1000.0)
+                .baseUnit("seconds")
+                .description("Age of the last completed materializer pass")
+                .register(meterRegistry);
+        Gauge.builder("dosemate.materializer.headroom", this,
+                        m -> Duration.between(Instant.now(), m.completedPassWindowEnd).toMillis() / 1000.0)
+                .baseUnit("seconds")
+                .description("How far ahead of now the last completed pass materialized doses")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // Partitions are drained in the maintenance bulkhead; a run is skipped while delivery is backlogged.
+    @Scheduled(fixedRateString = "${app.materializer.period-ms:10000}", initialDelayString = "${app.materializer.period-ms:10000}")
+    public void checkAndCreateReminders() {
+        if (!running.compareAndSet(false, true)) {
+            overlapsSkippedCounter.increment();
+            log.debug("Previous materializer run is still going, skipping this tick");
+            return;
+        }
+        try {
+            if (bulkheads.isDispatchBacklogged()) {
+                log.debug("Skipping reminder materialization while delivery is backlogged");
+                return;
+            }
+            runWithinBudget();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /** True while a pass has been carried over and is waiting for the next run. */
+    public boolean isPassInProgress() {
+        return pass != null;
+    }
+
+    private void runWithinBudget() {
+        long deadline = System.nanoTime() + budget.toNanos();
+        Set<Integer> owned = leaseManager.ownedPartitions();
+        if (owned.isEmpty()) {
+            pass = null;
+            return;
+        }
+        int partitions = leaseManager.getPartitionCount();
+        if (pass == null) {
+            Instant now = Instant.now();
+            pass = new Pass(now, now.plus(window));
+        }
+        Pass current = pass;
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (Integer partition : owned) {
+            if (!current.finished().contains(partition)) {
+                tasks.add(() -> drainInBulkhead(current, partition, partitions, deadline));
+            }
+        }
+        boolean complete = true;
+        try {
+            for (Future<Boolean> result : workers.invokeAll(tasks)) {
+                try {
+                    complete &= result.get();
+                } catch (ExecutionException e) {
+                    // the partition resumes from its last committed chunk on the next run
+                    complete = false;
+                    log.error("Materializing a partition failed: {}", e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (complete) {
+            completedPassStartedAt = current.startedAt();
+            completedPassWindowEnd = current.windowEnd();
+            pass = null;
+        } else {
+            carriedOverCounter.increment();
+            log.debug("Materializer budget spent with {} of {} partitions finished; resuming on the next run",
+                    current.finished().size(), owned.size());
+        }
+    }
+
+    // One maintenance slot per worker, as each holds its own connection.
+    private boolean drainInBulkhead(Pass pass, int partition, int partitions, long deadline) {
+        try {
+            return bulkheads.maintenance().call(() -> drainPartition(pass, partition, partitions, deadline));
+        } catch (BulkheadFullException e) {
+            return false;
+        }
+    }
+
+    // Commits the partition chunk by chunk; true once it has nothing left due in the pass's window.
+    private boolean drainPartition(Pass pass, int partition, int partitions, long deadline) {
+        Set<Integer> only = Set.of(partition);
+        while (true) {
+            List<Long> ids = medicineRepository.findDueIdsInPartitions(pass.windowEnd(),
+                    pass.checkpoints().getOrDefault(partition, 0L), partitions, only, PageRequest.of(0, chunkSize));
+            if (!ids.isEmpty()) {
+                chunkTimer.record(() -> commitChunk(ids, pass.windowEnd()));
+                pass.checkpoints().put(partition, ids.get(ids.size() - 1));
+            }
+            if (ids.size() < chunkSize) {
+                pass.finished().add(partition);
+                return true;
+            }
+            if (System.nanoTime() - deadline >= 0) return false;
+        }
+    }
+
+    /**
+     * Another writer can take a slot between the check in saveAllIfAbsent and the insert, and the unique key then
+     * rolls back the whole chunk. It is redone one medicine at a time, where the check sees the committed rows.
+     */
+    private void commitChunk(List<Long> medicineIds, Instant windowEnd) {
+        try {
+            count(transactionTemplate.execute(tx -> materializeChunk(medicineIds, windowEnd)));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Reminder slot taken concurrently, materializing chunk of {} medicines one by one", medicineIds.size());
+            for (Long medicineId : medicineIds) {
+                try {
+                    count(transactionTemplate.execute(tx -> materializeChunk(List.of(medicineId), windowEnd)));
+                } catch (DataIntegrityViolationException again) {
+                    // its nextFireAt did not move, so the next run expands it again
+                    log.debug("Reminder slot of medicine {} taken concurrently, retrying on the next run", medicineId);
+                }
+            }
+        }
+    }
+
+    private void count(Chunk chunk) {
+        materializedCounter.increment(chunk.saved());
+        duplicatesSuppressedCounter.increment(chunk.expanded() - chunk.saved());
+    }
+
+    // Doses that came due while the scheduler was not running are skipped, not back-filled.
+    private Chunk materializeChunk(List<Long> medicineIds, Instant windowEnd) {
+        Instant now = Instant.now();
+        List<Reminder> toSave = new ArrayList<>();
+        for (Medicine m : medicineRepository.findDueByIdIn(medicineIds, windowEnd)) {
+            try {
+                toSave.addAll(expandDoses(m, now, windowEnd, medicineSchedules));
+            } catch (IllegalArgumentException e) {
+                // one medicine with a schedule we cannot expand must not hold up the rest
+                log.warn("Could not materialize doses of medicine {}: {}", m.getId(), e.getMessage());
+            }
+        }
+        if (toSave.isEmpty()) return new Chunk(0, 0);
+        List<Reminder> saved = reminderRepository.saveAllIfAbsent(toSave);
+        // flushed here so a clash on the unique key surfaces as a DataIntegrityViolationException
+        reminderRepository.flush();
+        saved.forEach(reminderDispatcherService::track);
+        return new Chunk(toSave.size(), saved.size());
+    }
+
+    /**
+     * New reminders for the doses of {@code m} from its nextFireAt through {@code windowEnd}, leaving out those
+     * not after {@code now}, and moves nextFireAt past the window. Touches nothing but {@code m}.
+     */
+    static List<Reminder> expandDoses(Medicine m, Instant now, Instant windowEnd, MedicineSchedules medicineSchedules) {
+        ZoneId zone = ScheduleZones.of(m.getUser());
+        Instant scheduled = m.getNextFireAt();
+        List<Reminder> doses = new ArrayList<>();
+        while (scheduled != null && !scheduled.isAfter(windowEnd)) {
+            if (scheduled.isAfter(now)) {
+                Reminder r = new Reminder();
+                r.setMedicine(m);
+                r.setScheduledAt(ScheduleZones.toLocal(scheduled, zone));
+                r.setFireAt(scheduled);
+                r.setStatus(ReminderStatus.PENDING);
+                r.setDeliveryChannel("app");
+                r.setZoneId(zone.getId());
+                doses.add(r);
+            }
+            scheduled = medicineSchedules.nextFireAt(m, scheduled);
+        }
+        m.setNextFireAt(scheduled);
+        return doses;
+    }
+}
@@ -6,14 +6,21 @@ import com.dosemate.repository.HistoryRepository;
 import com.dosemate.repository.MedicineRepository;
 import com.dosemate.repository.ReminderRepository;
 import com.dosemate.repository.UserRepository;
-import org.springframework.scheduling.annotation.Scheduled;
+import com.dosemate.scheduling.CompiledSchedule;
+import com.dosemate.scheduling.MedicineSchedules;
+import com.dosemate.scheduling.ScheduleZones;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.ZonedDateTime;
 import java.time.ZoneId;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -24,55 +31,46 @@ public class ReminderService {
     private final MedicineRepository medicineRepository;
     private final HistoryRepository historyRepository;
     private final UserRepository userRepository;
+    private final ReminderDispatcherService reminderDispatcherService;
+    private final EscalationService escalationService;
+    private final MedicineSchedules medicineSchedules;
+    private final AdherenceRollupService adherenceRollupService;
 
-    public ReminderService(ReminderRepository reminderRepository, MedicineRepository medicineRepository, HistoryRepository historyRepository, UserRepository userRepository) {
+    public ReminderService(ReminderRepository reminderRepository, MedicineRepository medicineRepository, HistoryRepository historyRepository, UserRepository userRepository, ReminderDispatcherService reminderDispatcherService, EscalationService escalationService, MedicineSchedules medicineSchedules, AdherenceRollupService adherenceRollupService) {
         this.reminderRepository = reminderRepository;
         this.medicineRepository = medicineRepository;
         this.historyRepository = historyRepository;
         this.userRepository = userRepository;
+        this.reminderDispatcherService = reminderDispatcherService;
+        this.escalationService = escalationService;
+        this.medicineSchedules = medicineSchedules;
+        this.adherenceRollupService = adherenceRollupService;
     }
 
-    // Runs every minute and creates reminders for medicines based on simple schedule logic.
-    @Scheduled(fixedRate = 60000)
+    // Fills Medicine.nextFireAt for medicines created before the next-fire index existed.
+    @EventListener(ApplicationReadyEvent.class)
     @Transactional
-    public void checkAndCreateReminders() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime windowEnd = now.plusMinutes(5);
-
-        List<Medicine> medicines = medicineRepository.findAll();
-        List<Reminder> toSave = new ArrayList<>();
-
-        for (Medicine m : medicines) {
-            if (!m.isActive()) continue;
-            // naive: create reminders for today's reminderTimes if within next 5 minutes
-            for (String time : m.getReminderTimes()) {
-                String[] parts = time.split(":");
-                if (parts.length < 2) continue;
-                LocalDateTime scheduled = LocalDateTime.now().withHour(Integer.parseInt(parts[0])).withMinute(Integer.parseInt(parts[1])).withSecond(0).withNano(0);
-                if (scheduled.isAfter(now) && !scheduled.isAfter(windowEnd)) {
-                    Reminder r = new Reminder();
-                    r.setMedicine(m);
-                    r.setScheduledAt(scheduled);
-                    r.setStatus(ReminderStatus.PENDING);
-                    r.setDeliveryChannel("app");
-                    r.setZoneId(ZoneId.systemDefault().getId());
-                    toSave.add(r);
-                }
-            }
+    public void initializeNextFireIndex() {
+        Instant now = Instant.now();
+        for (Medicine m : medicineRepository.findByActiveTrueAndNextFireAtIsNull()) {
+            m.setNextFireAt(medicineSchedules.nextFireAt(m, now));
         }
-        if (!toSave.isEmpty()) reminderRepository.saveAll(toSave);
-
-        // Mark overdue reminders (PENDING or TRIGGERED) as MISSED after grace period
-        List<Reminder> pending = reminderRepository.findByStatus(ReminderStatus.PENDING);
-        List<Reminder> triggered = reminderRepository.findByStatus(ReminderStatus.TRIGGERED);
-        pending.addAll(triggered);
-        for (Reminder r : pending) {
-            if (r.getScheduledAt() != null && r.getScheduledAt().isBefore(LocalDateTime.now().minusMinutes(30))) {
-                r.setStatus(ReminderStatus.MISSED);
-                historyRepository.save(new History(null, r, ReminderStatus.MISSED, java.time.Instant.now(), "AUTO", null, null));
-                reminderRepository.save(r);
+    }
+
+    // Fills Reminder.fireAt for reminders written before it existed, reading scheduledAt in the
+    // reminder's zone. Runs before the dispatcher loads its wheel.
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void backfillFireAt() {
+        List<Reminder> batch;
+        do {
+            batch = reminderRepository.findByFireAtIsNullAndScheduledAtIsNotNull(PageRequest.of(0, 500));
+            for (Reminder r : batch) {
+                r.setFireAt(ScheduleZones.toInstant(r.getScheduledAt(), ScheduleZones.of(r.getZoneId())));
             }
-        }
+            reminderRepository.saveAllAndFlush(batch);
+        } while (!batch.isEmpty());
     }
 
     @Transactional
@@ -85,17 +83,27 @@ public class ReminderService {
         if (!medicine.getUser().getId().equals(user.getId())) {
             throw new IllegalArgumentException("Not authorized");
         }
+        if (dto.getScheduledAt() != null && reminderRepository.existsByMedicineAndScheduledAt(medicine, dto.getScheduledAt())) {
+            throw new IllegalArgumentException("A reminder for this medicine already exists at that time");
+        }
 
+        // scheduledAt is wall-clock time in the given zone, or in the user's own zone
+        ZoneId zone = ScheduleZones.of(dto.getZoneId() != null ? dto.getZoneId() : user.getTimeZone());
         Reminder reminder = new Reminder();
         reminder.setMedicine(medicine);
         reminder.setScheduledAt(dto.getScheduledAt());
+        reminder.setFireAt(dto.getScheduledAt() != null ? ScheduleZones.toInstant(dto.getScheduledAt(), zone) : null);
         reminder.setStatus(ReminderStatus.PENDING);
-        reminder.setRepeatPattern(dto.getRepeatPattern() != null ? dto.getRepeatPattern() : "daily");
-        reminder.setZoneId(dto.getZoneId() != null ? dto.getZoneId() : ZoneId.systemDefault().getId());
+        // null means a one-off reminder; anything else must compile (daily, weekly, monthly, RRULE or cron)
+        CompiledSchedule.forRepeat(dto.getRepeatPattern(), dto.getScheduledAt() != null ? dto.getScheduledAt() : LocalDateTime.now(zone));
+        reminder.setRepeatPattern(dto.getRepeatPattern());
+        reminder.setZoneId(zone.getId());
         reminder.setDeliveryChannel(dto.getDeliveryChannel() != null ? dto.getDeliveryChannel() : "app");
         reminder.setSnoozeCount(0);
 
-        return ReminderDTO.fromEntity(reminderRepository.save(reminder));
+        Reminder saved = reminderRepository.save(reminder);
+        reminderDispatcherService.track(saved);
+        return ReminderDTO.fromEntity(saved);
     }
 
     public List<ReminderDTO> getRemindersByMedicine(Long medicineId, String userEmail) {
@@ -136,9 +144,18 @@ public class ReminderService {
 
         ReminderStatus newStatus = ReminderStatus.valueOf(status);
         reminder.setStatus(newStatus);
+        // an in-flight delivery must not overwrite the new status when it acknowledges
+        reminder.setClaimToken(null);
+        reminder.setClaimedUntil(null);
         reminderRepository.save(reminder);
+        reminderDispatcherService.track(reminder);
+        if (newStatus == ReminderStatus.TAKEN || newStatus == ReminderStatus.PENDING) {
+            escalationService.cancel(reminderId);
+        }
         
-        historyRepository.save(new History(null, reminder, newStatus, java.time.Instant.now(), "MANUAL", null, null));
+        Instant now = Instant.now();
+        historyRepository.save(new History(null, reminder, user.getId(), reminder.getMedicine().getId(), newStatus, now, "MANUAL", null, null));
+        adherenceRollupService.record(user, reminder.getMedicine().getId(), newStatus, now, null);
         
         return ReminderDTO.fromEntity(reminder);
     }
@@ -154,20 +171,35 @@ public class ReminderService {
             throw new IllegalArgumentException("Not authorized");
         }
 
+        // snooze on the UTC timeline so a DST change in between does not skew it
+        ZoneId zone = ScheduleZones.of(reminder.getZoneId());
+        Instant fireAt = reminder.getFireAt() != null ? reminder.getFireAt() : ScheduleZones.toInstant(reminder.getScheduledAt(), zone);
+        Instant snoozedFireAt = fireAt.plus(Duration.ofMinutes(minutes));
+        LocalDateTime snoozedUntil = ScheduleZones.toLocal(snoozedFireAt, zone);
+        if (reminderRepository.existsByMedicineAndScheduledAt(reminder.getMedicine(), snoozedUntil)) {
+            throw new IllegalArgumentException("A reminder for this medicine already exists at that time");
+        }
         reminder.setSnoozeCount((reminder.getSnoozeCount() != null ? reminder.getSnoozeCount() : 0) + 1);
-        reminder.setScheduledAt(reminder.getScheduledAt().plusMinutes(minutes));
-        
-        return ReminderDTO.fromEntity(reminderRepository.save(reminder));
+        reminder.setScheduledAt(snoozedUntil);
+        reminder.setFireAt(snoozedFireAt);
+        reminder.setClaimToken(null);
+        reminder.setClaimedUntil(null);
+
+        Reminder saved = reminderRepository.save(reminder);
+        reminderDispatcherService.track(saved);
+        // the dose is due again later; it escalates afresh if that one is missed too
+        escalationService.cancel(reminderId);
+        return ReminderDTO.fromEntity(saved);
     }
 
     public List<ReminderDTO> getUpcomingReminders(String userEmail) {
         User user = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
         
-        LocalDateTime now = LocalDateTime.now();
-        return reminderRepository.findByStatus(ReminderStatus.PENDING).stream()
-                .filter(r -> r.getMedicine().getUser().getId().equals(user.getId()))
-                .filter(r -> r.getScheduledAt().isAfter(now) && r.getScheduledAt().isBefore(now.plusHours(24)))
+        Instant now = Instant.now();
+        Instant dayAhead = now.plus(Duration.ofHours(24));
+        return reminderRepository.findByMedicine_UserAndStatus(user, ReminderStatus.PENDING).stream()
+                .filter(r -> r.getFireAt() != null && r.getFireAt().isAfter(now) && r.getFireAt().isBefore(dayAhead))
                 .map(ReminderDTO::fromEntity)
                 .collect(Collectors.toList());
     }
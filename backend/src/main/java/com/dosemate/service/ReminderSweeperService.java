@@ -0,0 +1,109 @@
+package com.dosemate.service;
+
+import com.dosemate.bulkhead.Bulkheads;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.repository.HistoryRepository;
+import com.dosemate.repository.ReminderRepository;
+import com.dosemate.scheduling.PartitionLeaseManager;
+import com.dosemate.websocket.EventOutbox;
+import com.dosemate.websocket.IntakeEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Marks reminders that are still PENDING or TRIGGERED after the grace period as MISSED.
+ *
+ * Work happens in chunks, each in its own short transaction: the overdue ids are picked through the
+ * (status, fire_at) index and locked, one INSERT ... SELECT writes their AUTO history rows and one
+ * UPDATE flips their status. Nothing is loaded into memory besides the chunk's ids. Only users in
+ * partitions leased by this node are swept.
+ *
+ * Each chunk also counts the MISSED rows into the daily adherence rollup and records a MISSED event per
+ * reminder in the outbox, pushed to owners and caregivers once the chunk commits.
+ *
+ * Sweeps run in their own bulkhead, apart from the materializer's, and are skipped while delivery is backlogged.
+ */
+@Slf4j
+@Service
+public class ReminderSweeperService {
+
+    private static final Set<ReminderStatus> OPEN_STATUSES = EnumSet.of(ReminderStatus.PENDING, ReminderStatus.TRIGGERED);
+
+    private final ReminderRepository reminderRepository;
+    private final HistoryRepository historyRepository;
+    private final PartitionLeaseManager leaseManager;
+    private final EventOutbox eventOutbox;
+    private final Bulkheads bulkheads;
+    private final AdherenceRollupService adherenceRollupService;
+    private final TransactionTemplate transactionTemplate;
+    private final long graceMinutes;
+    private final int chunkSize;
+
+    public ReminderSweeperService(ReminderRepository reminderRepository,
+                                  HistoryRepository historyRepository,
+                                  PartitionLeaseManager leaseManager,
+                                  EventOutbox eventOutbox,
+                                  Bulkheads bulkheads,
+                                  AdherenceRollupService adherenceRollupService,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.sweeper.grace-minutes:30}") long graceMinutes,
+                                  @Value("${app.sweeper.chunk-size:500}") int chunkSize) {
+        this.reminderRepository = reminderRepository;
+        this.historyRepository = historyRepository;
+        this.leaseManager = leaseManager;
+        this.eventOutbox = eventOutbox;
+        this.bulkheads = bulkheads;
+        this.adherenceRollupService = adherenceRollupService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.graceMinutes = graceMinutes;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void sweepMissedReminders() {
+        if (!bulkheads.sweeper().tryRun(this::sweep)) {
+            log.debug("Skipping the missed-reminder sweep while the sweeper bulkhead is shedding");
+        }
+    }
+
+    private void sweep() {
+        Set<Integer> owned = leaseManager.ownedPartitions();
+        if (owned.isEmpty()) return;
+        Instant deadline = Instant.now().minus(Duration.ofMinutes(graceMinutes));
+        int total = 0;
+        int swept;
+        do {
+            swept = transactionTemplate.execute(tx -> sweepChunk(deadline, owned));
+            total += swept;
+        } while (swept == chunkSize);
+        if (total > 0) log.debug("Marked {} overdue reminders as MISSED", total);
+    }
+
+    private int sweepChunk(Instant deadline, Set<Integer> owned) {
+        List<Long> ids = reminderRepository.findOverdueIds(OPEN_STATUSES, deadline,
+                leaseManager.getPartitionCount(), owned, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) return 0;
+        Instant now = Instant.now();
+        historyRepository.insertMissed(ids, now);
+        reminderRepository.markMissed(ids, OPEN_STATUSES, now);
+        List<Reminder> reminders = reminderRepository.findWithMedicineByIdIn(ids);
+        adherenceRollupService.recordMissed(reminders, now);
+        for (Reminder r : reminders) {
+            eventOutbox.append(r.getMedicine().getUser().getId(), new IntakeEvent(r.getId(),
+                    r.getMedicine().getId(), r.getMedicine().getName(), ReminderStatus.MISSED, now, null));
+        }
+        return ids.size();
+    }
+}
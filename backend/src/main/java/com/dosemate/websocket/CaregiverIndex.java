@@ -0,0 +1,76 @@
+package com.dosemate.websocket;
+
+import com.dosemate.model.CaregiverStatus;
+import com.dosemate.repository.CaregiverRelationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Patient id to the ids of caregivers with an APPROVED relation, used to fan patients' dose events out
+ * to caregiver sessions. Loaded at startup, kept current by {@code CaregiverService} and rebuilt every
+ * {@code app.websocket.caregiver-index-refresh-ms} to pick up changes made through other nodes.
+ */
+@Slf4j
+@Component
+public class CaregiverIndex {
+
+    private final CaregiverRelationRepository caregiverRelationRepository;
+    private volatile Map<Long, Set<Long>> caregiversByPatient = new ConcurrentHashMap<>();
+
+    public CaregiverIndex(CaregiverRelationRepository caregiverRelationRepository) {
+        this.caregiverRelationRepository = caregiverRelationRepository;
+    }
+
+    public Set<Long> caregiversOf(Long patientId) {
+        Set<Long> caregivers = patientId == null ? null : caregiversByPatient.get(patientId);
+        return caregivers == null ? Set.of() : caregivers;
+    }
+
+    /** Adds the pair once the surrounding transaction, if any, has committed. */
+    public void link(Long patientId, Long caregiverId) {
+        afterCommit(() -> caregiversByPatient.computeIfAbsent(patientId, id -> ConcurrentHashMap.newKeySet()).add(caregiverId));
+    }
+
+    /** Removes the pair once the surrounding transaction, if any, has committed. */
+    public void unlink(Long patientId, Long caregiverId) {
+        afterCommit(() -> caregiversByPatient.computeIfPresent(patientId, (id, caregivers) -> {
+            caregivers.remove(caregiverId);
+            return caregivers.isEmpty() ? null : caregivers;
+        }));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.websocket.caregiver-index-refresh-ms:60000}",
+            initialDelayString = "${app.websocket.caregiver-index-refresh-ms:60000}")
+    public void rebuild() {
+        Map<Long, Set<Long>> rebuilt = new HashMap<>();
+        for (Object[] row : caregiverRelationRepository.findPatientCaregiverIdsByStatus(CaregiverStatus.APPROVED)) {
+            rebuilt.computeIfAbsent((Long) row[0], id -> ConcurrentHashMap.newKeySet()).add((Long) row[1]);
+        }
+        caregiversByPatient = new ConcurrentHashMap<>(rebuilt);
+        log.debug("Caregiver index holds {} patients", rebuilt.size());
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package com.dosemate.websocket;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * Sent to a patient's approved caregivers when a fired dose has still not been taken. {@code stage} counts
+ * up from 1 with every further alert for the same dose.
+ */
+public record EscalationEvent(Long patientId,
+                              Long reminderId,
+                              Long medicineId,
+                              String medicineName,
+                              int stage,
+                              Instant fireAt) implements SocketEvent {
+
+    @Override
+    @JsonProperty("type")
+    public String type() {
+        return "DOSE_ESCALATION";
+    }
+}
@@ -0,0 +1,64 @@
+package com.dosemate.websocket;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+/**
+ * Turns events into WebSocket frames with writers built once from the application's ObjectMapper.
+ * An event is encoded at most once per format, however many sessions receive it; the CBOR form is
+ * only produced when some recipient negotiated {@link #CBOR_PROTOCOL}.
+ */
+@Component
+public class EventEncoder {
+
+    public static final String JSON_PROTOCOL = "dosemate.json";
+    public static final String CBOR_PROTOCOL = "dosemate.cbor";
+
+    private final ObjectWriter jsonWriter;
+    private final ObjectWriter cborWriter;
+
+    public EventEncoder(ObjectMapper objectMapper) {
+        this.jsonWriter = objectMapper.writer();
+        this.cborWriter = objectMapper.copyWith(new CBORFactory()).writer();
+    }
+
+    public Frames encode(SocketEvent event) {
+        return new Frames(event);
+    }
+
+    /** Frames of an event stamped with its position in the user's stream, as {@code {"seq": n, ...event}}. */
+    public Frames encode(long seq, SocketEvent event) {
+        return new Frames(new SequencedEvent(seq, event));
+    }
+
+    record SequencedEvent(long seq, @JsonUnwrapped SocketEvent event) {
+    }
+
+    /** Lazily encoded frames of one event; not thread-safe, callers confine or lock it. */
+    public final class Frames {
+        private final Object event;
+        private TextMessage text;
+        private byte[] cbor;
+
+        private Frames(Object event) {
+            this.event = event;
+        }
+
+        public TextMessage text() throws JsonProcessingException {
+            if (text == null) text = new TextMessage(jsonWriter.writeValueAsBytes(event));
+            return text;
+        }
+
+        // a fresh message per session: sending consumes the ByteBuffer, but the bytes are shared
+        public BinaryMessage binary() throws JsonProcessingException {
+            if (cbor == null) cbor = cborWriter.writeValueAsBytes(event);
+            return new BinaryMessage(cbor);
+        }
+    }
+}
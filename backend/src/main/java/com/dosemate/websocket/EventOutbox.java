@@ -0,0 +1,52 @@
+package com.dosemate.websocket;
+
+import com.dosemate.delivery.DeliveryPipeline;
+import com.dosemate.model.OutboxEvent;
+import com.dosemate.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+
+/**
+ * Records WebSocket events in {@code outbox_events} as part of the transaction that makes the change, so
+ * clients see an event exactly when its change commits. {@link OutboxRelay} sends them afterwards and is
+ * nudged as soon as the transaction has committed.
+ */
+@Component
+public class EventOutbox {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxRelay relay;
+    private final ObjectWriter writer;
+
+    public EventOutbox(OutboxEventRepository outboxEventRepository, OutboxRelay relay, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.relay = relay;
+        this.writer = objectMapper.writer();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(Long userId, SocketEvent event) {
+        String payload;
+        try {
+            payload = writer.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize " + event.type() + " event", e);
+        }
+        String external = event instanceof ReminderEvent reminder ? DeliveryPipeline.externalChannel(reminder.deliveryChannel()) : null;
+        outboxEventRepository.save(new OutboxEvent(null, userId, event.type(), payload, Instant.now(), external));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                relay.nudge();
+            }
+        });
+    }
+}
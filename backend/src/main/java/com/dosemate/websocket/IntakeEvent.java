@@ -0,0 +1,21 @@
+package com.dosemate.websocket;
+
+import com.dosemate.model.ReminderStatus;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/** A dose was recorded as taken, missed or skipped; clients refresh their adherence figures. */
+public record IntakeEvent(Long reminderId,
+                          Long medicineId,
+                          String medicineName,
+                          ReminderStatus status,
+                          Instant timestamp,
+                          Long latencySeconds) implements SocketEvent {
+
+    @Override
+    @JsonProperty("type")
+    public String type() {
+        return "INTAKE_RECORDED";
+    }
+}
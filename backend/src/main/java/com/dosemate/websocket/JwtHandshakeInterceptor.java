@@ -0,0 +1,79 @@
+package com.dosemate.websocket;
+
+import com.dosemate.repository.UserRepository;
+import com.dosemate.security.JwtUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Authenticates WebSocket handshakes with the same JWT the REST API uses. Browsers cannot set headers
+ * on a WebSocket, so the token may also be passed as {@code ?token=}. The user id is stored in the
+ * session attributes under {@link #USER_ID}; handshakes without a valid token are refused with 401.
+ *
+ * A reconnecting client passes the last sequence number it saw as {@code ?lastSeq=}; it is stored under
+ * {@link #LAST_SEQ} so the handler can replay what was missed.
+ */
+@Component
+public class JwtHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String USER_ID = "userId";
+    public static final String LAST_SEQ = "lastSeq";
+
+    private final JwtUtils jwtUtils;
+    private final UserRepository userRepository;
+
+    public JwtHandshakeInterceptor(JwtUtils jwtUtils, UserRepository userRepository) {
+        this.jwtUtils = jwtUtils;
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String token = extractToken(request);
+        if (token != null && jwtUtils.validateToken(token)) {
+            String email = jwtUtils.getSubjectFromToken(token);
+            Long userId = userRepository.findByEmail(email).map(u -> u.getId()).orElse(null);
+            if (userId != null) {
+                attributes.put(USER_ID, userId);
+                Long lastSeq = lastSeq(request);
+                if (lastSeq != null) attributes.put(LAST_SEQ, lastSeq);
+                return true;
+            }
+        }
+        response.setStatusCode(HttpStatus.UNAUTHORIZED);
+        return false;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    private static Long lastSeq(ServerHttpRequest request) {
+        String value = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst(LAST_SEQ);
+        try {
+            return value == null || value.isBlank() ? null : Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String extractToken(ServerHttpRequest request) {
+        List<String> headers = request.getHeaders().get("Authorization");
+        if (headers != null) {
+            for (String header : headers) {
+                if (header.startsWith("Bearer ")) return header.substring(7);
+            }
+        }
+        return UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("token");
+    }
+}
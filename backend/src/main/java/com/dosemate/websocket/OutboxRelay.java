@@ -0,0 +1,245 @@
+package com.dosemate.websocket;
+
+import com.dosemate.delivery.DeliveryPipeline;
+import com.dosemate.model.OutboxEvent;
+import com.dosemate.repository.OutboxEventRepository;
+import com.dosemate.scheduling.PartitionLeaseManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends committed {@code outbox_events} to the WebSocket sessions connected to this node, in
+ * (createdAt, id) order and in pages of {@code app.outbox.batch-size}.
+ *
+ * Every node relays every event, because any node may hold the user's sessions; each keeps its own
+ * cursor in memory, starting at boot. Ids come from a pooled sequence and a row becomes visible only when
+ * its transaction commits, so a row can appear behind the cursor. Each pass therefore re-reads the last
+ * {@code app.outbox.lookback-ms} and skips ids it already sent; that window must exceed the longest
+ * producing transaction plus clock skew between nodes.
+ *
+ * Fired reminders go through the {@link DeliveryPipeline}: to the in-app channel on every node, and to the
+ * reminder's external channel (email, SMS, push) only on the node owning the user's partition, so they are
+ * sent once across the cluster. External delivery does not follow the in-memory cursor: the row keeps its
+ * {@code pending_channel} until the owner has handed it over, and each pass the owner reads what is still
+ * pending in its partitions. A reminder committed just before its owner died, or while its partition moved
+ * to another node, is therefore sent by the next owner.
+ *
+ * Delivery is at least once: an event that fails to send, e.g. because a delivery lane is full, is retried
+ * on the next pass, up to {@code app.outbox.max-attempts} times. Until then that user's later events wait
+ * behind it, while other users' events keep flowing. Rows older than {@code app.outbox.retention-minutes}
+ * are deleted, whether or not they are still pending.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ReminderWebSocketHandler webSocketHandler;
+    private final DeliveryPipeline deliveryPipeline;
+    private final PartitionLeaseManager leaseManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration lookback;
+    private final Duration retention;
+    private final int maxAttempts;
+    private final ExecutorService nudges = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("outbox-relay-"));
+    private final AtomicBoolean nudged = new AtomicBoolean();
+    private final Map<Long, Instant> sent = new HashMap<>();
+    private final Map<Long, Integer> failures = new HashMap<>();
+    private final Map<Long, Integer> externalFailures = new HashMap<>();
+    private volatile boolean ready;
+    private Instant cursor;
+    private Instant retryFrom;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       ReminderWebSocketHandler webSocketHandler,
+                       DeliveryPipeline deliveryPipeline,
+                       PartitionLeaseManager leaseManager,
+                       ObjectMapper objectMapper,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${app.outbox.batch-size:500}") int batchSize,
+                       @Value("${app.outbox.lookback-ms:10000}") long lookbackMs,
+                       @Value("${app.outbox.retention-minutes:60}") long retentionMinutes,
+                       @Value("${app.outbox.max-attempts:5}") int maxAttempts) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.webSocketHandler = webSocketHandler;
+        this.deliveryPipeline = deliveryPipeline;
+        this.leaseManager = leaseManager;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.lookback = Duration.ofMillis(lookbackMs);
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        cursor = Instant.now();
+        ready = true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        nudges.shutdown();
+    }
+
+    /** Relays soon on the relay thread; called after a producing transaction commits. */
+    public void nudge() {
+        if (!ready || !nudged.compareAndSet(false, true)) return;
+        nudges.execute(() -> {
+            nudged.set(false);
+            relay();
+        });
+    }
+
+    // Picks up events committed through other nodes.
+    @Scheduled(fixedDelayString = "${app.outbox.poll-ms:1000}")
+    public void poll() {
+        relay();
+    }
+
+    synchronized void relay() {
+        if (!ready) return;
+        Instant fromAt = cursor.minus(lookback);
+        if (retryFrom != null && retryFrom.isBefore(fromAt)) fromAt = retryFrom;
+        Instant readFrom = fromAt;
+        long fromId = 0;
+        // users with an event that could not go out in this pass; their later events wait too, to keep their order
+        Set<Long> held = new HashSet<>();
+        Instant heldSince = null;
+        List<OutboxEvent> page;
+        do {
+            page = outboxEventRepository.findPageAfter(fromAt, fromId, PageRequest.of(0, batchSize));
+            for (OutboxEvent e : page) {
+                fromAt = e.getCreatedAt();
+                fromId = e.getId();
+                if (sent.containsKey(e.getId())) continue;
+                if (held.contains(e.getUserId()) || !publish(e)) {
+                    held.add(e.getUserId());
+                    if (heldSince == null) heldSince = e.getCreatedAt();
+                    continue;
+                }
+                sent.put(e.getId(), e.getCreatedAt());
+                if (e.getCreatedAt().isAfter(cursor)) cursor = e.getCreatedAt();
+            }
+        } while (page.size() == batchSize);
+        // the next pass reads again from the oldest held event, however far the cursor moved on
+        retryFrom = heldSince;
+        Instant horizon = retryFrom != null && retryFrom.isBefore(readFrom) ? retryFrom : readFrom;
+        sent.values().removeIf(createdAt -> createdAt.isBefore(horizon));
+        relayExternal();
+    }
+
+    // Hands pending reminders of the users this node owns to their external channel, oldest first per user.
+    private void relayExternal() {
+        Set<Integer> owned = leaseManager.ownedPartitions();
+        if (owned.isEmpty()) return;
+        int partitions = leaseManager.getPartitionCount();
+        Set<Long> held = new HashSet<>();
+        Instant fromAt = Instant.EPOCH;
+        long fromId = 0;
+        List<OutboxEvent> page;
+        do {
+            page = outboxEventRepository.findPendingExternalAfter(partitions, owned, fromAt, fromId,
+                    PageRequest.of(0, batchSize));
+            List<Long> relayed = new ArrayList<>();
+            for (OutboxEvent e : page) {
+                fromAt = e.getCreatedAt();
+                fromId = e.getId();
+                if (held.contains(e.getUserId()) || !publishExternal(e)) {
+                    held.add(e.getUserId());
+                    continue;
+                }
+                relayed.add(e.getId());
+            }
+            // sent again by the next owner if this node dies before the update commits
+            if (!relayed.isEmpty()) {
+                transactionTemplate.executeWithoutResult(tx -> outboxEventRepository.markExternalRelayed(relayed));
+            }
+        } while (page.size() == batchSize);
+    }
+
+    private boolean publish(OutboxEvent e) {
+        return attempt(failures, e, () -> {
+            switch (e.getType()) {
+                case "REMINDER" -> {
+                    ReminderEvent event = objectMapper.readValue(e.getPayload(), ReminderEvent.class);
+                    submit(DeliveryPipeline.WEBSOCKET, e.getUserId(), event);
+                }
+                case "INTAKE_RECORDED" -> {
+                    IntakeEvent event = objectMapper.readValue(e.getPayload(), IntakeEvent.class);
+                    webSocketHandler.sendAdherence(e.getUserId(), event);
+                    webSocketHandler.sendToCaregivers(new PatientDoseEvent(e.getUserId(), event.reminderId(),
+                            event.medicineId(), event.medicineName(), event.status(), event.timestamp()));
+                }
+                case "DOSE_ESCALATION" -> webSocketHandler.sendEscalation(
+                        objectMapper.readValue(e.getPayload(), EscalationEvent.class));
+                default -> log.warn("Skipping outbox event {} of unknown type {}", e.getId(), e.getType());
+            }
+        });
+    }
+
+    private boolean publishExternal(OutboxEvent e) {
+        return attempt(externalFailures, e, () -> submit(e.getPendingChannel(), e.getUserId(),
+                objectMapper.readValue(e.getPayload(), ReminderEvent.class)));
+    }
+
+    // True once the event went out, or was given up on after max-attempts; false to retry it on the next pass.
+    private boolean attempt(Map<Long, Integer> failures, OutboxEvent e, Send send) {
+        try {
+            send.run();
+            failures.remove(e.getId());
+            return true;
+        } catch (Exception ex) {
+            int attempts = failures.merge(e.getId(), 1, Integer::sum);
+            if (attempts >= maxAttempts) {
+                log.error("Giving up on outbox event {} after {} attempts: {}", e.getId(), attempts, ex.getMessage());
+                failures.remove(e.getId());
+                return true;
+            }
+            log.warn("Could not relay outbox event {} (attempt {}): {}", e.getId(), attempts, ex.getMessage());
+            return false;
+        }
+    }
+
+    private void submit(String channel, Long userId, ReminderEvent event) {
+        if (!deliveryPipeline.submit(channel, userId, event)) {
+            throw new IllegalStateException(channel + " delivery queue is full");
+        }
+    }
+
+    private interface Send {
+        void run() throws Exception;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void purgeOldEvents() {
+        Instant cutoff = Instant.now().minus(retention);
+        Integer deleted = transactionTemplate.execute(tx -> outboxEventRepository.deleteCreatedBefore(cutoff));
+        if (deleted != null && deleted > 0) log.debug("Deleted {} relayed outbox events", deleted);
+    }
+}
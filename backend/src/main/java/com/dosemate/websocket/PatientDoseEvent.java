@@ -0,0 +1,21 @@
+package com.dosemate.websocket;
+
+import com.dosemate.model.ReminderStatus;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/** Sent to a patient's approved caregivers when one of the patient's doses fires, is taken or is missed. */
+public record PatientDoseEvent(Long patientId,
+                               Long reminderId,
+                               Long medicineId,
+                               String medicineName,
+                               ReminderStatus status,
+                               Instant at) implements SocketEvent {
+
+    @Override
+    @JsonProperty("type")
+    public String type() {
+        return "PATIENT_DOSE";
+    }
+}
@@ -0,0 +1,25 @@
+package com.dosemate.websocket;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * A reminder has fired. {@code scheduledAt} is the dose time on the user's wall clock; {@code deliveryChannel}
+ * is the reminder's extra channel besides the app, if any.
+ */
+public record ReminderEvent(Long reminderId,
+                            Long medicineId,
+                            String medicineName,
+                            String dosage,
+                            String unit,
+                            String scheduledAt,
+                            Instant fireAt,
+                            String deliveryChannel) implements SocketEvent {
+
+    @Override
+    @JsonProperty("type")
+    public String type() {
+        return "REMINDER";
+    }
+}
@@ -1,66 +1,157 @@
 package com.dosemate.websocket;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import java.io.IOException;
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves /ws/reminders and /ws/adherence. Sessions are authenticated by {@link JwtHandshakeInterceptor}
+ * and every event goes only to the sessions of the user it belongs to.
+ *
+ * Sending only queues the frame on each recipient's {@link SessionOutbox}; a small writer pool does the
+ * network I/O, so callers inside a transaction or on the dispatcher thread never wait on a client.
+ *
+ * Dose events of a patient are also sent to the patient's approved caregivers, looked up in the
+ * {@link CaregiverIndex}.
+ *
+ * Each user's events carry increasing {@code seq} numbers; a client reconnecting with {@code ?lastSeq=}
+ * gets the events it missed, or RESYNC when they are no longer buffered (see {@link UserEventStream}).
+ *
+ * Events are JSON text frames unless the client asks for the {@code dosemate.cbor} subprotocol, in which
+ * case they are sent as CBOR binary frames. Either way each event is encoded once for all recipients.
+ */
+@Slf4j
+@Component
+public class ReminderWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+    private static final String OUTBOX = "outbox";
+
+    private final UserSessionRegistry registry;
+    private final CaregiverIndex caregiverIndex;
+    private final EventEncoder encoder;
+    private final ExecutorService writers;
+    private final int queueCapacity;
+    private final SessionOutbox.OverflowPolicy overflowPolicy;
+    private final SessionOutbox.Listener outboxListener;
+
+    public ReminderWebSocketHandler(UserSessionRegistry registry,
+                                    EventEncoder encoder,
+                                    CaregiverIndex caregiverIndex,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.websocket.writer-threads:4}") int writerThreads,
+                                    @Value("${app.websocket.send-queue-size:256}") int queueCapacity,
+                                    @Value("${app.websocket.overflow-policy:DISCONNECT}") String overflowPolicy) {
+        this.registry = registry;
+        this.encoder = encoder;
+        this.caregiverIndex = caregiverIndex;
+        this.writers = Executors.newFixedThreadPool(Math.max(1, writerThreads), new CustomizableThreadFactory("ws-writer-"));
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.overflowPolicy = SessionOutbox.OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase());
+        Counter dropped = Counter.builder("dosemate.websocket.frames.dropped")
+                .description("Frames dropped from a full session queue")
+                .register(meterRegistry);
+        Counter evicted = Counter.builder("dosemate.websocket.sessions.evicted")
+                .description("Sessions closed because they fell too far behind")
+                .register(meterRegistry);
+        this.outboxListener = new SessionOutbox.Listener() {
+            @Override
+            public void dropped(SessionOutbox outbox) {
+                dropped.increment();
+            }
 
-public class ReminderWebSocketHandler extends TextWebSocketHandler {
+            @Override
+            public void evicted(SessionOutbox outbox) {
+                evicted.increment();
+                registry.unregister(outbox);
+                log.info("Closing slow WebSocket session {} of user {}", outbox.session().getId(), outbox.userId());
+            }
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdown();
+    }
 
-    private static final Set<WebSocketSession> sessions = new CopyOnWriteArraySet<>();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(EventEncoder.CBOR_PROTOCOL, EventEncoder.JSON_PROTOCOL);
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        sessions.add(session);
-        System.out.println("WebSocket connected. Total sessions: " + sessions.size());
+        Long userId = userIdOf(session);
+        if (userId == null) {
+            session.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+        SessionOutbox outbox = new SessionOutbox(session, userId, queueCapacity, overflowPolicy, writers, outboxListener);
+        session.getAttributes().put(OUTBOX, outbox);
+        Object lastSeq = session.getAttributes().get(JwtHandshakeInterceptor.LAST_SEQ);
+        registry.register(outbox, lastSeq instanceof Long seq ? seq : null, encoder);
+        log.debug("WebSocket connected for user {}", userId);
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
         // Handle incoming messages from client (if needed)
-        String payload = message.getPayload();
-        System.out.println("Received message: " + payload);
+        log.debug("Received message: {}", message.getPayload());
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        sessions.remove(session);
-        System.out.println("WebSocket disconnected. Total sessions: " + sessions.size());
+        if (session.getAttributes().get(OUTBOX) instanceof SessionOutbox outbox) {
+            registry.unregister(outbox);
+        }
+        log.debug("WebSocket disconnected for user {}", userIdOf(session));
     }
 
-    // Broadcast reminder event to all connected clients
-    public static void broadcastReminder(Map<String, Object> reminderEvent) throws IOException {
-        TextMessage message = new TextMessage(new ObjectMapper().writeValueAsString(reminderEvent));
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                try {
-                    session.sendMessage(message);
-                } catch (IOException e) {
-                    System.err.println("Error sending message to session: " + e.getMessage());
-                }
-            }
+    // Send a reminder event to the owning user's clients
+    public void sendReminder(Long userId, ReminderEvent event) throws IOException {
+        send(userId, event);
+    }
+
+    // Send an adherence update to the owning user's clients
+    public void sendAdherence(Long userId, IntakeEvent event) throws IOException {
+        send(userId, event);
+    }
+
+    // Send a patient's dose event to the clients of the patient's approved caregivers
+    public void sendToCaregivers(PatientDoseEvent event) throws IOException {
+        for (Long caregiverId : caregiverIndex.caregiversOf(event.patientId())) {
+            send(caregiverId, event);
         }
     }
 
-    // Broadcast adherence stats update
-    public static void broadcastAdherence(Map<String, Object> adherenceData) throws IOException {
-        TextMessage message = new TextMessage(new ObjectMapper().writeValueAsString(adherenceData));
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                try {
-                    session.sendMessage(message);
-                } catch (IOException e) {
-                    System.err.println("Error sending adherence update: " + e.getMessage());
-                }
-            }
+    // Alert a patient's approved caregivers that a dose is still not taken
+    public void sendEscalation(EscalationEvent event) throws IOException {
+        for (Long caregiverId : caregiverIndex.caregiversOf(event.patientId())) {
+            send(caregiverId, event);
         }
     }
+
+    private void send(Long userId, SocketEvent event) throws IOException {
+        // no stream means the user has not been connected lately; nobody could resume, so nothing to keep
+        UserEventStream stream = registry.streamOf(userId);
+        if (stream != null) stream.publish(event, encoder);
+    }
+
+    private static Long userIdOf(WebSocketSession session) {
+        Object userId = session.getAttributes().get(JwtHandshakeInterceptor.USER_ID);
+        return userId instanceof Long id ? id : null;
+    }
 }
@@ -0,0 +1,140 @@
+package com.dosemate.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Outbound queue of one WebSocket session. {@link #offer} never blocks: the message is queued and a
+ * writer task on the shared pool sends it. At most one writer runs per session, so frames keep their
+ * order and the session is never written concurrently.
+ *
+ * A session whose queue is full is a slow consumer; depending on the {@link OverflowPolicy} its oldest
+ * queued message is dropped or the session is closed so the client reconnects.
+ */
+@Slf4j
+class SessionOutbox {
+
+    enum OverflowPolicy { DROP_OLDEST, DISCONNECT }
+
+    // a writer yields after this many frames so one busy session cannot hold a pool thread
+    private static final int MAX_FRAMES_PER_RUN = 64;
+
+    interface Listener {
+        void dropped(SessionOutbox outbox);
+
+        void evicted(SessionOutbox outbox);
+    }
+
+    private final WebSocketSession session;
+    private final Long userId;
+    private final boolean binary;
+    private final BlockingQueue<WebSocketMessage<?>> queue;
+    private final OverflowPolicy policy;
+    private final Executor writers;
+    private final Listener listener;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean evicted;
+    private volatile boolean closing;
+
+    SessionOutbox(WebSocketSession session, Long userId, int capacity, OverflowPolicy policy, Executor writers, Listener listener) {
+        this.session = session;
+        this.userId = userId;
+        this.binary = EventEncoder.CBOR_PROTOCOL.equals(session.getAcceptedProtocol());
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+        this.writers = writers;
+        this.listener = listener;
+    }
+
+    WebSocketSession session() {
+        return session;
+    }
+
+    Long userId() {
+        return userId;
+    }
+
+    /** True when the client negotiated CBOR frames instead of JSON text. */
+    boolean binary() {
+        return binary;
+    }
+
+    int queued() {
+        return queue.size();
+    }
+
+    /** Queues a message for sending; returns false when the session is gone or was evicted by this call. */
+    boolean offer(WebSocketMessage<?> message) {
+        if (evicted || !session.isOpen()) return false;
+        while (!queue.offer(message)) {
+            if (policy == OverflowPolicy.DISCONNECT) {
+                evict();
+                return false;
+            }
+            if (queue.poll() != null) listener.dropped(this);
+        }
+        schedule();
+        return true;
+    }
+
+    private void evict() {
+        if (evicted) return;
+        evicted = true;
+        queue.clear();
+        listener.evicted(this);
+        // the close frame is written by the writer so it never races a send in progress
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) return;
+        try {
+            writers.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            scheduled.set(false);
+        }
+    }
+
+    private void drain() {
+        try {
+            if (evicted) {
+                closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+                return;
+            }
+            WebSocketMessage<?> message;
+            for (int sent = 0; sent < MAX_FRAMES_PER_RUN && (message = queue.poll()) != null; sent++) {
+                if (!session.isOpen()) {
+                    queue.clear();
+                    return;
+                }
+                session.sendMessage(message);
+            }
+        } catch (Exception e) {
+            log.warn("Error sending to WebSocket session {}: {}", session.getId(), e.getMessage());
+            evicted = true;
+            queue.clear();
+            closeQuietly(CloseStatus.SERVER_ERROR);
+        } finally {
+            scheduled.set(false);
+            // pick up messages or an eviction that arrived while this run was finishing
+            if (session.isOpen() && (evicted ? !closing : !queue.isEmpty())) schedule();
+        }
+    }
+
+    private void closeQuietly(CloseStatus status) {
+        closing = true;
+        try {
+            if (session.isOpen()) session.close(status);
+        } catch (Exception e) {
+            log.debug("Error closing WebSocket session {}: {}", session.getId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.dosemate.websocket;
+
+/**
+ * An event pushed to a user's WebSocket clients. {@link #type()} is written as the {@code type} field so
+ * clients can tell events apart without looking at their shape.
+ */
+public sealed interface SocketEvent permits ReminderEvent, IntakeEvent, PatientDoseEvent, EscalationEvent, StreamEvent {
+
+    String type();
+}
@@ -0,0 +1,17 @@
+package com.dosemate.websocket;
+
+/**
+ * Tells a client where it stands in its event stream. {@code HELLO} is sent on a connection without
+ * {@code lastSeq}; {@code RESYNC} means the missed events are no longer buffered and the client must reload.
+ * Either way {@code seq} is the latest sequence number, to be sent back as {@code lastSeq} on reconnect.
+ */
+public record StreamEvent(String type, long seq) implements SocketEvent {
+
+    static StreamEvent hello(long seq) {
+        return new StreamEvent("HELLO", seq);
+    }
+
+    static StreamEvent resync(long seq) {
+        return new StreamEvent("RESYNC", seq);
+    }
+}
@@ -0,0 +1,90 @@
+package com.dosemate.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The event stream of one user: the user's open sessions, the last sequence number handed out and a ring
+ * of the most recent frames, so a client that reconnects with {@code lastSeq} gets only what it missed.
+ *
+ * Numbering starts from the creation time in microseconds. A stream created after a restart or on another
+ * node therefore starts above anything a client can have seen, and an old {@code lastSeq} leads to a
+ * RESYNC instead of a wrong replay.
+ */
+final class UserEventStream {
+
+    private final Set<SessionOutbox> sessions = ConcurrentHashMap.newKeySet();
+    private final EventEncoder.Frames[] ring;
+    private final long firstSeq;
+    private long lastSeq;
+    private volatile long lastActiveMillis;
+
+    UserEventStream(int capacity, long nowMillis) {
+        this.ring = new EventEncoder.Frames[capacity];
+        this.lastSeq = nowMillis * 1000;
+        this.firstSeq = lastSeq + 1;
+        this.lastActiveMillis = nowMillis;
+    }
+
+    Set<SessionOutbox> sessions() {
+        return sessions;
+    }
+
+    long lastActiveMillis() {
+        return lastActiveMillis;
+    }
+
+    synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    /** Numbers the event, keeps it for replay and queues it on every open session, in sequence order. */
+    synchronized long publish(SocketEvent event, EventEncoder encoder) throws JsonProcessingException {
+        long seq = ++lastSeq;
+        EventEncoder.Frames frames = encoder.encode(seq, event);
+        ring[slot(seq)] = frames;
+        lastActiveMillis = System.currentTimeMillis();
+        for (SessionOutbox outbox : sessions) {
+            outbox.offer(frameFor(outbox, frames));
+        }
+        return seq;
+    }
+
+    /**
+     * Adds a session. With {@code resumeAfter} the events after it are replayed first, or RESYNC is sent when
+     * they have left the ring; without it the session gets HELLO with the current position.
+     */
+    synchronized void attach(SessionOutbox outbox, Long resumeAfter, EventEncoder encoder) throws JsonProcessingException {
+        lastActiveMillis = System.currentTimeMillis();
+        if (resumeAfter == null) {
+            outbox.offer(frameFor(outbox, encoder.encode(StreamEvent.hello(lastSeq))));
+        } else if (resumeAfter >= oldestBuffered() - 1 && resumeAfter <= lastSeq) {
+            for (long seq = resumeAfter + 1; seq <= lastSeq; seq++) {
+                outbox.offer(frameFor(outbox, ring[slot(seq)]));
+            }
+        } else {
+            outbox.offer(frameFor(outbox, encoder.encode(StreamEvent.resync(lastSeq))));
+        }
+        sessions.add(outbox);
+    }
+
+    void detach(SessionOutbox outbox) {
+        sessions.remove(outbox);
+        lastActiveMillis = System.currentTimeMillis();
+    }
+
+    private long oldestBuffered() {
+        return Math.max(firstSeq, lastSeq - ring.length + 1);
+    }
+
+    private int slot(long seq) {
+        return (int) Math.floorMod(seq, (long) ring.length);
+    }
+
+    private static WebSocketMessage<?> frameFor(SessionOutbox outbox, EventEncoder.Frames frames) throws JsonProcessingException {
+        return outbox.binary() ? frames.binary() : frames.text();
+    }
+}
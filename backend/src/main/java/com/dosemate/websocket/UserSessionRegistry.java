@@ -0,0 +1,81 @@
+package com.dosemate.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Event streams of connected users, keyed by user id. Adding or removing a session only touches that
+ * user's stream, and looking up the recipients of an event costs the same however many users are
+ * connected.
+ *
+ * A stream outlives its last session by {@code app.websocket.replay-retention-minutes}, so a client that
+ * drops off briefly can resume from its {@code lastSeq}.
+ */
+@Component
+public class UserSessionRegistry {
+
+    private final Map<Long, UserEventStream> streams = new ConcurrentHashMap<>();
+    private final int replayBufferSize;
+    private final Duration retention;
+
+    public UserSessionRegistry(@Value("${app.websocket.replay-buffer-size:256}") int replayBufferSize,
+                               @Value("${app.websocket.replay-retention-minutes:30}") long retentionMinutes) {
+        this.replayBufferSize = Math.max(1, replayBufferSize);
+        this.retention = Duration.ofMinutes(retentionMinutes);
+    }
+
+    /** Adds the session to its user's stream, replaying after {@code resumeAfter} (see {@link UserEventStream#attach}). */
+    void register(SessionOutbox outbox, Long resumeAfter, EventEncoder encoder) {
+        // attach inside compute so pruning cannot drop the stream between lookup and attach
+        streams.compute(outbox.userId(), (id, stream) -> {
+            UserEventStream s = stream != null ? stream : new UserEventStream(replayBufferSize, System.currentTimeMillis());
+            try {
+                s.attach(outbox, resumeAfter, encoder);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Could not encode stream position", e);
+            }
+            return s;
+        });
+    }
+
+    void unregister(SessionOutbox outbox) {
+        UserEventStream stream = streams.get(outbox.userId());
+        if (stream != null) stream.detach(outbox);
+    }
+
+    /** The user's stream, or null when the user has not been connected within the retention period. */
+    UserEventStream streamOf(Long userId) {
+        return userId == null ? null : streams.get(userId);
+    }
+
+    Set<SessionOutbox> sessionsOf(Long userId) {
+        UserEventStream stream = streamOf(userId);
+        return stream == null ? Set.of() : stream.sessions();
+    }
+
+    public int userCount() {
+        return streams.size();
+    }
+
+    // Forgets streams that have had no session and no event for the retention period.
+    @Scheduled(fixedDelay = 60_000)
+    public void pruneIdleStreams() {
+        pruneIdleStreams(System.currentTimeMillis());
+    }
+
+    void pruneIdleStreams(long nowMillis) {
+        long cutoff = nowMillis - retention.toMillis();
+        // computeIfPresent keeps the check and removal atomic against register
+        for (Long userId : streams.keySet()) {
+            streams.computeIfPresent(userId, (id, stream) ->
+                    stream.sessions().isEmpty() && stream.lastActiveMillis() < cutoff ? null : stream);
+        }
+    }
+}
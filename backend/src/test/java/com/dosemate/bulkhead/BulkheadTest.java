@@ -0,0 +1,64 @@
+package com.dosemate.bulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BulkheadTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void callerBeyondTheLimitIsRejectedAfterWaiting() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("analytics", 1, 50, () -> false, meterRegistry);
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> bulkhead.tryRun(() -> {
+            inside.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertTrue(inside.await(1, TimeUnit.SECONDS));
+        assertEquals(1.0, gauge("dosemate.bulkhead.active"));
+
+        assertThrows(BulkheadFullException.class, () -> bulkhead.call(() -> "late"));
+        assertEquals(1.0, rejected("full"));
+
+        release.countDown();
+        holder.join();
+        assertEquals("ok", bulkhead.call(() -> "ok"));
+        assertEquals(0.0, gauge("dosemate.bulkhead.active"));
+    }
+
+    @Test
+    void shedsEverythingWhileOverloaded() {
+        AtomicBoolean overloaded = new AtomicBoolean(true);
+        Bulkhead bulkhead = new Bulkhead("analytics", 4, 0, overloaded::get, meterRegistry);
+
+        assertFalse(bulkhead.tryRun(() -> { }));
+        assertEquals(1.0, rejected("shed"));
+
+        overloaded.set(false);
+        assertTrue(bulkhead.tryRun(() -> { }));
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("bulkhead", "analytics").gauge().value();
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("dosemate.bulkhead.rejected").tags("bulkhead", "analytics", "reason", reason).counter().count();
+    }
+}
@@ -1,5 +1,8 @@
 package com.dosemate.controller;
 
+import com.dosemate.bulkhead.BulkheadFullException;
+import com.dosemate.dto.HistoryCursor;
+import com.dosemate.dto.HistoryPage;
 import com.dosemate.model.History;
 import com.dosemate.model.Reminder;
 import com.dosemate.model.ReminderStatus;
@@ -13,10 +16,13 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.Instant;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
@@ -41,11 +47,55 @@ public class HistoryControllerTest {
         h.setStatus(ReminderStatus.TAKEN);
         h.setRecordedAt(Instant.now());
 
-        when(historyService.getUserHistory("user@example.com")).thenReturn(Collections.singletonList(h));
+        when(historyService.getUserHistoryPage("user@example.com", null, null, 50))
+                .thenReturn(new HistoryPage(Collections.singletonList(h), null));
 
         mockMvc.perform(get("/api/history"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].id").value(1));
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(header().doesNotExist(HistoryController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    @WithMockUser(username = "user@example.com")
+    void listHistory_passesCursorAndReturnsNext() throws Exception {
+        History h = new History();
+        h.setId(7L);
+        h.setStatus(ReminderStatus.TAKEN);
+        h.setRecordedAt(Instant.parse("2024-03-01T12:00:00Z"));
+        HistoryCursor cursor = new HistoryCursor(Instant.parse("2024-03-02T08:30:00Z"), 42L);
+        HistoryCursor next = new HistoryCursor(h.getRecordedAt(), h.getId());
+
+        when(historyService.getUserHistoryPage("user@example.com", null, cursor, 1))
+                .thenReturn(new HistoryPage(Collections.singletonList(h), next));
+
+        mockMvc.perform(get("/api/history").param("cursor", cursor.encode()).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(7))
+                .andExpect(header().string(HistoryController.NEXT_CURSOR_HEADER, next.encode()));
+    }
+
+    @Test
+    @WithMockUser(username = "user@example.com")
+    void listHistory_filtersByStatus() throws Exception {
+        History h = new History();
+        h.setId(3L);
+        h.setStatus(ReminderStatus.MISSED);
+        h.setRecordedAt(Instant.now());
+
+        when(historyService.getUserHistoryPage("user@example.com", ReminderStatus.MISSED, null, 6))
+                .thenReturn(new HistoryPage(Collections.singletonList(h), null));
+
+        mockMvc.perform(get("/api/history").param("status", "missed").param("limit", "6"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("MISSED"));
+    }
+
+    @Test
+    @WithMockUser(username = "user@example.com")
+    void listHistory_malformedCursor_returns400() throws Exception {
+        mockMvc.perform(get("/api/history").param("cursor", "bogus"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -63,4 +113,35 @@ public class HistoryControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(2));
     }
+
+    @Test
+    @WithMockUser(username = "user@example.com")
+    void stats_shedUnderLoad_returns503() throws Exception {
+        when(historyService.getAdherenceStats("user@example.com"))
+                .thenThrow(new BulkheadFullException("analytics", "Too many analytics requests right now, try again shortly"));
+
+        mockMvc.perform(get("/api/history/stats"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    @WithMockUser(username = "user@example.com")
+    void series_unknownGranularity_returns400() throws Exception {
+        mockMvc.perform(get("/api/history/stats/series").param("granularity", "fortnight"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "user@example.com")
+    void medicineStats_returnsEveryMedicineInOneResponse() throws Exception {
+        when(historyService.getAdherenceStatsForAllMedicines("user@example.com")).thenReturn(List.of(
+                Map.of("medicineId", 1L, "name", "Aspirin", "taken", 3L),
+                Map.of("medicineId", 2L, "name", "Ibuprofen", "taken", 0L)));
+
+        mockMvc.perform(get("/api/history/stats/medicines"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].name").value("Ibuprofen"));
+    }
 }
@@ -0,0 +1,142 @@
+package com.dosemate.delivery;
+
+import com.dosemate.websocket.ReminderEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeliveryPipelineTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private DeliveryPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) pipeline.shutdown();
+    }
+
+    @Test
+    void slowChannelDoesNotHoldUpFastOne() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(20);
+        DeliveryChannel slow = channel("sms", batch -> release.await());
+        DeliveryChannel fast = channel("websocket", batch -> batch.forEach(d -> fastDone.countDown()));
+        pipeline = new DeliveryPipeline(List.of(slow, fast), meterRegistry, new MockEnvironment());
+
+        for (long id = 1; id <= 20; id++) {
+            pipeline.submit("sms", 1L, reminder(id));
+            pipeline.submit(DeliveryPipeline.WEBSOCKET, 1L, reminder(id));
+        }
+
+        assertTrue(fastDone.await(2, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    void batchesAreBoundedAndEveryDeliveryArrives() throws Exception {
+        AtomicInteger largest = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(100);
+        DeliveryChannel email = channel("email", batch -> {
+            largest.accumulateAndGet(batch.size(), Math::max);
+            batch.forEach(d -> done.countDown());
+        });
+        pipeline = new DeliveryPipeline(List.of(email), meterRegistry,
+                new MockEnvironment().withProperty("app.delivery.email.batch-size", "8"));
+
+        for (long id = 1; id <= 100; id++) pipeline.submit("email", 1L, reminder(id));
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertTrue(largest.get() <= 8);
+        assertEquals(100.0, meterRegistry.get("dosemate.delivery.sent").tag("channel", "email").counter().count());
+    }
+
+    @Test
+    void failedBatchIsRetriedWithBackoffThenGivenUp() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch delivered = new CountDownLatch(1);
+        DeliveryChannel push = channel("push", batch -> {
+            long id = batch.get(0).event().reminderId();
+            if (id == 2L || calls.incrementAndGet() < 3) throw new IllegalStateException("provider unavailable");
+            delivered.countDown();
+        });
+        pipeline = new DeliveryPipeline(List.of(push), meterRegistry, new MockEnvironment()
+                .withProperty("app.delivery.push.batch-size", "1")
+                .withProperty("app.delivery.push.max-attempts", "3")
+                .withProperty("app.delivery.push.backoff-ms", "10"));
+
+        pipeline.submit("push", 1L, reminder(1L));
+        assertTrue(delivered.await(2, TimeUnit.SECONDS));
+        assertEquals(3, calls.get());
+
+        pipeline.submit("push", 1L, reminder(2L));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (failedCount("push") < 1 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+        assertEquals(1.0, failedCount("push"));
+    }
+
+    @Test
+    void unknownOrFullChannelRefusesDelivery() {
+        CountDownLatch release = new CountDownLatch(1);
+        DeliveryChannel sms = channel("sms", batch -> release.await());
+        pipeline = new DeliveryPipeline(List.of(sms), meterRegistry, new MockEnvironment()
+                .withProperty("app.delivery.sms.queue-size", "2")
+                .withProperty("app.delivery.sms.batch-size", "1"));
+
+        assertFalse(pipeline.submit("fax", 1L, reminder(1L)));
+        int accepted = 0;
+        for (long id = 1; id <= 10; id++) {
+            if (pipeline.submit("sms", 1L, reminder(id))) accepted++;
+        }
+        // one in the worker, two queued
+        assertTrue(accepted <= 3);
+        release.countDown();
+    }
+
+    @Test
+    void deliveryChannelNamesAreNormalized() {
+        assertNull(DeliveryPipeline.externalChannel(null));
+        assertNull(DeliveryPipeline.externalChannel("app"));
+        assertNull(DeliveryPipeline.externalChannel("LOCAL"));
+        assertEquals("email", DeliveryPipeline.externalChannel(" EMAIL "));
+        assertEquals("sms", DeliveryPipeline.externalChannel("sms"));
+    }
+
+    private double failedCount(String channel) {
+        return meterRegistry.get("dosemate.delivery.failed").tag("channel", channel).counter().count();
+    }
+
+    private interface BatchHandler {
+        void handle(List<Delivery> batch) throws Exception;
+    }
+
+    private static DeliveryChannel channel(String name, BatchHandler handler) {
+        return new DeliveryChannel() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public void deliver(List<Delivery> batch) throws Exception {
+                handler.handle(batch);
+            }
+        };
+    }
+
+    private static ReminderEvent reminder(long id) {
+        return new ReminderEvent(id, 1L, "Aspirin", "1", "tablet", "2026-01-01T08:00",
+                Instant.parse("2026-01-01T08:00:00Z"), "app");
+    }
+}
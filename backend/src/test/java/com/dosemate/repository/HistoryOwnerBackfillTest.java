@@ -0,0 +1,101 @@
+package com.dosemate.repository;
+
+import com.dosemate.config.HistoryOwnerBackfill;
+import com.dosemate.model.History;
+import com.dosemate.model.Medicine;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.model.User;
+import com.dosemate.service.ReminderDispatcherService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:historybackfill;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.history.backfill-chunk-size=3"
+})
+public class HistoryOwnerBackfillTest {
+
+    @Autowired
+    private HistoryOwnerBackfill backfill;
+
+    @Autowired
+    private HistoryRepository historyRepository;
+
+    @Autowired
+    private ReminderRepository reminderRepository;
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // keeps the real dispatcher from running against the test database
+    @MockBean
+    private ReminderDispatcherService reminderDispatcherService;
+
+    @Test
+    void rowsWithoutOwnerAreFilledFromTheirReminder() {
+        Reminder reminder = reminder("backfill@example.com");
+        Long userId = reminder.getMedicine().getUser().getId();
+        List<History> legacy = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            legacy.add(new History(null, reminder, null, null, ReminderStatus.TAKEN, Instant.now(), "MANUAL", null, null));
+        }
+        historyRepository.saveAll(legacy);
+        assertTrue(historyRepository.findAllForUser(userId).isEmpty());
+
+        backfill.backfill();
+
+        List<History> rows = historyRepository.findAllForUser(userId);
+        assertEquals(10, rows.size());
+        assertTrue(rows.stream().allMatch(h -> reminder.getMedicine().getId().equals(h.getMedicineId())));
+    }
+
+    @Test
+    void missedRowsAreWrittenWithTheirOwner() {
+        Reminder reminder = reminder("missed@example.com");
+        new TransactionTemplate(transactionManager).executeWithoutResult(tx ->
+                historyRepository.insertMissed(List.of(reminder.getId()), Instant.now()));
+
+        List<History> rows = historyRepository.findAllForMedicine(reminder.getMedicine().getId(),
+                reminder.getMedicine().getUser().getId());
+        assertEquals(1, rows.size());
+        assertEquals(ReminderStatus.MISSED, rows.get(0).getStatus());
+    }
+
+    private Reminder reminder(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user = userRepository.save(user);
+        Medicine medicine = new Medicine();
+        medicine.setName("Backfillin");
+        medicine.setUser(user);
+        medicine = medicineRepository.save(medicine);
+        Reminder r = new Reminder();
+        r.setMedicine(medicine);
+        r.setFireAt(Instant.now());
+        r.setStatus(ReminderStatus.TRIGGERED);
+        return reminderRepository.save(r);
+    }
+}
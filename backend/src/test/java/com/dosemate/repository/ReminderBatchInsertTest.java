@@ -0,0 +1,91 @@
+package com.dosemate.repository;
+
+import com.dosemate.model.Medicine;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.order_updates=true"
+})
+public class ReminderBatchInsertTest {
+
+    private static final int REMINDERS = 200;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private ReminderRepository reminderRepository;
+
+    @Test
+    void remindersAreInsertedInBatches() {
+        User user = new User();
+        user.setEmail("batch@example.com");
+        user.setPassword("secret");
+        user = userRepository.save(user);
+        Medicine medicine = new Medicine();
+        medicine.setName("Batchol");
+        medicine.setUser(user);
+        medicine = medicineRepository.save(medicine);
+        entityManager.flush();
+
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+
+        Instant start = Instant.parse("2030-01-01T08:00:00Z");
+        List<Reminder> reminders = new ArrayList<>();
+        for (int i = 0; i < REMINDERS; i++) {
+            Reminder r = new Reminder();
+            r.setMedicine(medicine);
+            r.setFireAt(start.plusSeconds(60L * i));
+            r.setScheduledAt(LocalDateTime.ofInstant(r.getFireAt(), ZoneOffset.UTC));
+            r.setStatus(ReminderStatus.PENDING);
+            reminders.add(r);
+        }
+        reminderRepository.saveAll(reminders);
+        entityManager.flush();
+
+        assertEquals(REMINDERS, stats.getEntityInsertCount());
+        // 4 insert batches plus a handful of sequence fetches, instead of one statement per row
+        assertTrue(stats.getPrepareStatementCount() < 20,
+                "expected batched inserts, got " + stats.getPrepareStatementCount() + " statements");
+
+        // flushing status changes goes through the update batch as well
+        stats.clear();
+        reminders.forEach(r -> r.setStatus(ReminderStatus.TRIGGERED));
+        entityManager.flush();
+        assertEquals(REMINDERS, stats.getEntityUpdateCount());
+        assertTrue(stats.getPrepareStatementCount() < 20,
+                "expected batched updates, got " + stats.getPrepareStatementCount() + " statements");
+    }
+}
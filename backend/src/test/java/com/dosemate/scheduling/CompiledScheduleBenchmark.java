@@ -0,0 +1,80 @@
+package com.dosemate.scheduling;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Next-occurrence lookups over a million compiled medicine schedules. The score is medicines per second.
+ * Not part of the test run; start {@link #main} on the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompiledScheduleBenchmark {
+
+    private static final int MEDICINES = 1_000_000;
+    private static final String[] RULES = {"DAILY", "WEEKLY", "CUSTOM", "FREQ=WEEKLY;BYDAY=MO,WE,FR", "0 8,20 * * *"};
+
+    private CompiledSchedule[] schedules;
+    private long now;
+    private final long[] window = new long[16];
+
+    @Setup
+    public void compileSchedules() {
+        Random random = new Random(42);
+        LocalDate today = LocalDate.of(2026, 1, 1);
+        schedules = new CompiledSchedule[MEDICINES];
+        for (int i = 0; i < MEDICINES; i++) {
+            List<String> times = List.of(String.format("%02d:%02d", random.nextInt(24), random.nextInt(60)),
+                    String.format("%02d:%02d", random.nextInt(24), random.nextInt(60)));
+            LocalDate start = today.minusDays(random.nextInt(60));
+            LocalDate end = random.nextBoolean() ? null : today.plusDays(random.nextInt(90));
+            schedules[i] = CompiledSchedule.compile(RULES[i % RULES.length], times, start, end);
+        }
+        now = CompiledSchedule.toEpochMinute(LocalDateTime.of(2026, 1, 1, 12, 0));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEDICINES)
+    public long nextOccurrence() {
+        long acc = 0;
+        for (CompiledSchedule s : schedules) {
+            acc += s.nextOccurrence(now);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEDICINES)
+    public long occurrencesInNextDay() {
+        long acc = 0;
+        for (CompiledSchedule s : schedules) {
+            acc += s.occurrencesBetween(now, now + 1440, window);
+        }
+        return acc;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(CompiledScheduleBenchmark.class.getSimpleName()).build()).run();
+    }
+}
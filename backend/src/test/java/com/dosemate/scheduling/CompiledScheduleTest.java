@@ -0,0 +1,83 @@
+package com.dosemate.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompiledScheduleTest {
+
+    // a Saturday
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 17, 9, 30);
+
+    @Test
+    void dailyFiresAtEveryTime() {
+        CompiledSchedule s = CompiledSchedule.compile("DAILY", List.of("20:00", "08:00"), null, null);
+        assertEquals(LocalDateTime.of(2026, 10, 17, 20, 0), s.nextOccurrence(NOW));
+        assertEquals(LocalDateTime.of(2026, 10, 18, 8, 0), s.nextOccurrence(LocalDateTime.of(2026, 10, 17, 20, 0)));
+    }
+
+    @Test
+    void weeklyFollowsStartDateWeekday() {
+        CompiledSchedule s = CompiledSchedule.compile("WEEKLY", List.of("08:00"), LocalDate.of(2026, 10, 13), null);
+        assertEquals(LocalDateTime.of(2026, 10, 20, 8, 0), s.nextOccurrence(NOW));
+    }
+
+    @Test
+    void respectsStartAndEndDates() {
+        CompiledSchedule s = CompiledSchedule.compile("DAILY", List.of("08:00"), LocalDate.of(2026, 11, 1), LocalDate.of(2026, 11, 2));
+        assertEquals(LocalDateTime.of(2026, 11, 1, 8, 0), s.nextOccurrence(NOW));
+        assertEquals(LocalDateTime.of(2026, 11, 2, 8, 0), s.nextOccurrence(LocalDateTime.of(2026, 11, 1, 8, 0)));
+        assertNull(s.nextOccurrence(LocalDateTime.of(2026, 11, 2, 8, 0)));
+    }
+
+    @Test
+    void rruleAndCron() {
+        CompiledSchedule rrule = CompiledSchedule.compile("RRULE:FREQ=WEEKLY;BYDAY=MO,WE;BYHOUR=7,19;BYMINUTE=15", null, null, null);
+        assertEquals(LocalDateTime.of(2026, 10, 19, 7, 15), rrule.nextOccurrence(NOW));
+
+        CompiledSchedule monthly = CompiledSchedule.compile("FREQ=MONTHLY;BYMONTHDAY=31", List.of("10:00"), null, null);
+        assertEquals(LocalDateTime.of(2026, 12, 31, 10, 0), monthly.nextOccurrence(LocalDateTime.of(2026, 11, 1, 0, 0)));
+
+        CompiledSchedule cron = CompiledSchedule.compile("*/20 8-9 * * MON-FRI", null, null, null);
+        assertEquals(LocalDateTime.of(2026, 10, 19, 8, 0), cron.nextOccurrence(NOW));
+        assertEquals(LocalDateTime.of(2026, 10, 19, 9, 40), cron.nextOccurrence(LocalDateTime.of(2026, 10, 19, 9, 20)));
+    }
+
+    @Test
+    void cronWithBothDayFieldsFiresOnEither() {
+        // the 1st of the month or any Monday, as in cron; Nov 1 2026 is a Sunday
+        CompiledSchedule cron = CompiledSchedule.compile("0 9 1 * MON", null, null, null);
+        assertEquals(LocalDateTime.of(2026, 10, 19, 9, 0), cron.nextOccurrence(NOW));
+        assertEquals(LocalDateTime.of(2026, 11, 1, 9, 0), cron.nextOccurrence(LocalDateTime.of(2026, 10, 26, 9, 0)));
+        assertEquals(LocalDateTime.of(2026, 11, 2, 9, 0), cron.nextOccurrence(LocalDateTime.of(2026, 11, 1, 9, 0)));
+
+        // with only one of them restricted the other still matches every day
+        CompiledSchedule firstOnly = CompiledSchedule.compile("0 9 1 * *", null, null, null);
+        assertEquals(LocalDateTime.of(2026, 11, 1, 9, 0), firstOnly.nextOccurrence(NOW));
+    }
+
+    @Test
+    void occurrencesBetweenFillsCallerBuffer() {
+        CompiledSchedule s = CompiledSchedule.compile("DAILY", List.of("08:00", "20:00"), null, null);
+        long[] out = new long[8];
+        int n = s.occurrencesBetween(CompiledSchedule.toEpochMinute(NOW), CompiledSchedule.toEpochMinute(NOW.plusDays(2)), out);
+        assertEquals(4, n);
+        assertEquals(LocalDateTime.of(2026, 10, 17, 20, 0), CompiledSchedule.ofEpochMinute(out[0]));
+        assertEquals(LocalDateTime.of(2026, 10, 19, 8, 0), CompiledSchedule.ofEpochMinute(out[3]));
+    }
+
+    @Test
+    void unusableSchedules() {
+        assertSame(CompiledSchedule.NEVER, CompiledSchedule.compile("DAILY", List.of("25:00"), null, null));
+        assertNull(CompiledSchedule.forRepeat(null, NOW));
+        assertThrows(IllegalArgumentException.class, () -> CompiledSchedule.compile("every tuesday", List.of("08:00"), null, null));
+        assertThrows(IllegalArgumentException.class, () -> CompiledSchedule.compile("FREQ=YEARLY", List.of("08:00"), null, null));
+    }
+}
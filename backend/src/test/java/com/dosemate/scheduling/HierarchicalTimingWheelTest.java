@@ -0,0 +1,70 @@
+package com.dosemate.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HierarchicalTimingWheelTest {
+
+    private static final long TICK = 1000;
+
+    @Test
+    void firesWithinOneTickOfDeadline_acrossLevels() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, 64, 3, 0);
+        long[] deadlines = {500, 63_000, 64_000, 3_600_500, 86_400_000};
+        for (int i = 0; i < deadlines.length; i++) {
+            assertTrue(wheel.schedule(i, deadlines[i]));
+        }
+
+        long[] firedAt = new long[deadlines.length];
+        for (long now = 0; now <= 86_401_000; now += TICK) {
+            final long t = now;
+            wheel.advance(now, id -> firedAt[(int) id] = t);
+        }
+
+        for (int i = 0; i < deadlines.length; i++) {
+            assertTrue(firedAt[i] >= deadlines[i], "fired early: " + i);
+            assertTrue(firedAt[i] < deadlines[i] + TICK, "fired late: " + i);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelAndReschedule() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, 64, 3, 0);
+        wheel.schedule(1, 10_000);
+        wheel.schedule(2, 10_000);
+        assertTrue(wheel.cancel(1));
+        wheel.schedule(2, 20_000);
+
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(15_000, fired::add);
+        assertTrue(fired.isEmpty());
+        wheel.advance(20_000, fired::add);
+        assertEquals(List.of(2L), fired);
+        assertFalse(wheel.cancel(2));
+    }
+
+    @Test
+    void overdueEntriesFireOnNextAdvance() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, 64, 3, 50_000);
+        wheel.schedule(9, 1_000);
+
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(50_000, fired::add);
+        assertEquals(List.of(9L), fired);
+    }
+
+    @Test
+    void rejectsDeadlinesBeyondHorizon() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, 64, 2, 0);
+        assertFalse(wheel.schedule(1, wheel.horizonMillis() + TICK));
+        assertFalse(wheel.contains(1));
+        assertTrue(wheel.schedule(1, wheel.horizonMillis()));
+    }
+}
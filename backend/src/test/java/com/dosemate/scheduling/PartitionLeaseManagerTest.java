@@ -0,0 +1,76 @@
+package com.dosemate.scheduling;
+
+import com.dosemate.DoseMateApplication;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs two application contexts against one in-memory H2 database and checks how they split
+ * and take over partitions. Renewals are triggered by hand.
+ */
+public class PartitionLeaseManagerTest {
+
+    private static final int PARTITIONS = 8;
+
+    private ConfigurableApplicationContext first;
+    private ConfigurableApplicationContext second;
+
+    @AfterEach
+    void closeContexts() {
+        if (first != null) first.close();
+        if (second != null) second.close();
+    }
+
+    @Test
+    void nodesSplitPartitionsAndTakeOverExpiredLeases() throws Exception {
+        first = startNode("leases-a");
+        second = startNode("leases-b");
+        PartitionLeaseManager a = first.getBean(PartitionLeaseManager.class);
+        PartitionLeaseManager b = second.getBean(PartitionLeaseManager.class);
+
+        // each node trims to its share once it sees the other, then fills up from what was released
+        b.rebalance();
+        a.rebalance();
+        b.rebalance();
+        a.rebalance();
+
+        Set<Integer> ownedByA = a.ownedPartitions();
+        Set<Integer> ownedByB = b.ownedPartitions();
+        assertEquals(PARTITIONS / 2, ownedByA.size());
+        assertEquals(PARTITIONS / 2, ownedByB.size());
+        Set<Integer> all = new HashSet<>(ownedByA);
+        all.addAll(ownedByB);
+        assertEquals(IntStream.range(0, PARTITIONS).boxed().collect(Collectors.toSet()), all);
+
+        // a stops renewing; once its leases lapse b takes everything
+        Thread.sleep(3500);
+        b.rebalance();
+        assertEquals(PARTITIONS, b.ownedPartitions().size());
+        assertTrue(b.ownsAllPartitions());
+        assertTrue(a.ownedPartitions().isEmpty());
+    }
+
+    private static ConfigurableApplicationContext startNode(String nodeId) {
+        return new SpringApplicationBuilder(DoseMateApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:leases;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--app.scheduler.node-id=" + nodeId,
+                "--app.scheduler.partitions=" + PARTITIONS,
+                "--app.scheduler.lease-seconds=3",
+                "--app.scheduler.lease-renew-ms=3600000");
+    }
+}
@@ -0,0 +1,171 @@
+package com.dosemate.scheduling;
+
+import com.dosemate.model.Medicine;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.model.User;
+import com.dosemate.repository.MedicineRepository;
+import com.dosemate.repository.ReminderRepository;
+import com.dosemate.repository.UserRepository;
+import com.dosemate.service.ReminderDispatcherService;
+import com.dosemate.service.ReminderSweeperService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:claims;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.dispatcher.visibility-timeout-seconds=1"
+})
+public class ReminderClaimQueueTest {
+
+    private static final int REMINDERS = 60;
+
+    private Medicine medicine;
+
+    @Autowired
+    private ReminderClaimQueue claimQueue;
+
+    @Autowired
+    private PartitionLeaseManager leaseManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private ReminderRepository reminderRepository;
+
+    @Autowired
+    private ReminderSweeperService sweeperService;
+
+    // keeps the real dispatcher from draining the queue under the test
+    @MockBean
+    private ReminderDispatcherService reminderDispatcherService;
+
+    @BeforeEach
+    void createDueReminders() {
+        reminderRepository.deleteAll();
+        leaseManager.rebalance();
+
+        User user = userRepository.findByEmail("claims@example.com").orElseGet(() -> {
+            User u = new User();
+            u.setEmail("claims@example.com");
+            u.setPassword("secret");
+            return userRepository.save(u);
+        });
+        medicine = new Medicine();
+        medicine.setName("Claimol");
+        medicine.setUser(user);
+        medicine = medicineRepository.save(medicine);
+
+        Instant start = Instant.now().minusSeconds(300);
+        List<Reminder> reminders = new ArrayList<>();
+        for (int i = 0; i < REMINDERS; i++) {
+            Reminder r = new Reminder();
+            r.setMedicine(medicine);
+            r.setFireAt(start.plusSeconds(i));
+            r.setScheduledAt(LocalDateTime.ofInstant(r.getFireAt(), ZoneId.systemDefault()));
+            r.setStatus(ReminderStatus.PENDING);
+            reminders.add(r);
+        }
+        reminderRepository.saveAll(reminders);
+    }
+
+    @Test
+    void concurrentWorkersNeverClaimTheSameReminder() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Callable<List<Long>> worker = () -> {
+                List<Long> ids = new ArrayList<>();
+                ReminderClaimQueue.Claim claim;
+                do {
+                    claim = claimQueue.claim(Instant.now(), 7);
+                    for (Reminder r : claim.reminders()) {
+                        ids.add(r.getId());
+                        claimQueue.acknowledge(claim, r);
+                    }
+                } while (!claim.isEmpty());
+                return ids;
+            };
+            List<Future<List<Long>>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) results.add(pool.submit(worker));
+
+            List<Long> all = new ArrayList<>();
+            for (Future<List<Long>> f : results) all.addAll(f.get());
+            assertEquals(REMINDERS, all.size());
+            assertEquals(REMINDERS, new HashSet<>(all).size());
+            assertEquals(REMINDERS, reminderRepository.findByStatus(ReminderStatus.TRIGGERED).size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void unacknowledgedClaimsReturnAfterVisibilityTimeout() throws Exception {
+        ReminderClaimQueue.Claim first = claimQueue.claim(Instant.now(), REMINDERS);
+        assertEquals(REMINDERS, first.reminders().size());
+        assertTrue(claimQueue.claim(Instant.now(), REMINDERS).isEmpty());
+
+        Thread.sleep(1500);
+        ReminderClaimQueue.Claim second = claimQueue.claim(Instant.now(), REMINDERS);
+        assertEquals(REMINDERS, second.reminders().size());
+
+        // the lapsed claim can no longer acknowledge
+        Reminder r = first.reminders().get(0);
+        assertFalse(claimQueue.acknowledge(first, r));
+        Set<Long> ids = new HashSet<>();
+        second.reminders().forEach(x -> ids.add(x.getId()));
+        assertTrue(ids.contains(r.getId()));
+    }
+
+    @Test
+    void reminderSweptWhileClaimedCannotBeAcknowledged() {
+        // well past the sweeper's grace period, e.g. a claim taken over after its node died
+        Reminder late = new Reminder();
+        late.setMedicine(medicine);
+        late.setFireAt(Instant.now().minusSeconds(2 * 3600));
+        late.setScheduledAt(LocalDateTime.ofInstant(late.getFireAt(), ZoneId.systemDefault()));
+        late.setStatus(ReminderStatus.PENDING);
+        late = reminderRepository.save(late);
+
+        ReminderClaimQueue.Claim claim = claimQueue.claim(Instant.now(), REMINDERS + 1);
+        Long lateId = late.getId();
+        Reminder claimed = claim.reminders().stream().filter(r -> r.getId().equals(lateId)).findFirst().orElseThrow();
+
+        sweeperService.sweepMissedReminders();
+
+        assertFalse(claimQueue.acknowledge(claim, claimed));
+        Reminder after = reminderRepository.findById(lateId).orElseThrow();
+        assertEquals(ReminderStatus.MISSED, after.getStatus());
+        assertNull(after.getClaimToken());
+        // the rest of the claim is within the grace period and still acknowledges
+        assertTrue(claimQueue.acknowledge(claim, claim.reminders().stream()
+                .filter(r -> !r.getId().equals(lateId)).findFirst().orElseThrow()));
+    }
+}
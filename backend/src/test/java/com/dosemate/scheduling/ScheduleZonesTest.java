@@ -0,0 +1,69 @@
+package com.dosemate.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ScheduleZonesTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    @Test
+    void gapMovesForward() {
+        // 2026-03-29 02:30 does not exist in Berlin; clocks jump from 02:00 to 03:00
+        Instant fire = ScheduleZones.toInstant(LocalDateTime.of(2026, 3, 29, 2, 30), BERLIN);
+        assertEquals(Instant.parse("2026-03-29T01:30:00Z"), fire);
+        assertEquals(LocalDateTime.of(2026, 3, 29, 3, 30), ScheduleZones.toLocal(fire, BERLIN));
+    }
+
+    @Test
+    void overlapTakesEarlierOccurrence() {
+        // 2026-10-25 02:30 happens twice in Berlin
+        Instant fire = ScheduleZones.toInstant(LocalDateTime.of(2026, 10, 25, 2, 30), BERLIN);
+        assertEquals(Instant.parse("2026-10-25T00:30:00Z"), fire);
+    }
+
+    @Test
+    void dailyScheduleAcrossDstKeepsWallClock() {
+        CompiledSchedule daily = CompiledSchedule.compile("DAILY", List.of("08:00"), null, null);
+        LocalDateTime first = daily.nextOccurrence(LocalDateTime.of(2026, 3, 28, 9, 0));
+        LocalDateTime second = daily.nextOccurrence(first);
+        assertEquals(Instant.parse("2026-03-29T06:00:00Z"), ScheduleZones.toInstant(first, BERLIN));
+        assertEquals(Instant.parse("2026-03-30T06:00:00Z"), ScheduleZones.toInstant(second, BERLIN));
+    }
+
+    @Test
+    void twoDosesInsideGapBothFire() {
+        // 02:15 and 02:45 do not exist on 2026-03-29 and fire at 03:15 and 03:45 Berlin time
+        CompiledSchedule daily = CompiledSchedule.compile("DAILY", List.of("02:15", "02:45"), null, null);
+        Instant first = ScheduleZones.nextFire(daily, Instant.parse("2026-03-29T00:00:00Z"), BERLIN);
+        Instant second = ScheduleZones.nextFire(daily, first, BERLIN);
+        Instant third = ScheduleZones.nextFire(daily, second, BERLIN);
+        assertEquals(Instant.parse("2026-03-29T01:15:00Z"), first);
+        assertEquals(Instant.parse("2026-03-29T01:45:00Z"), second);
+        assertEquals(Instant.parse("2026-03-30T00:15:00Z"), third);
+    }
+
+    @Test
+    void doseShiftedByGapDoesNotHideLaterDose() {
+        // 02:30 moves to 03:30, after the 03:15 dose; both fire, in that order
+        CompiledSchedule daily = CompiledSchedule.compile("DAILY", List.of("02:30", "03:15"), null, null);
+        Instant first = ScheduleZones.nextFire(daily, Instant.parse("2026-03-29T00:00:00Z"), BERLIN);
+        Instant second = ScheduleZones.nextFire(daily, first, BERLIN);
+        Instant third = ScheduleZones.nextFire(daily, second, BERLIN);
+        assertEquals(Instant.parse("2026-03-29T01:15:00Z"), first);
+        assertEquals(Instant.parse("2026-03-29T01:30:00Z"), second);
+        assertEquals(Instant.parse("2026-03-30T00:30:00Z"), third);
+    }
+
+    @Test
+    void unknownZoneFallsBackToServerZone() {
+        assertEquals(ZoneId.systemDefault(), ScheduleZones.of("Mars/Olympus"));
+        assertEquals(ZoneId.systemDefault(), ScheduleZones.of((String) null));
+    }
+}
@@ -0,0 +1,210 @@
+package com.dosemate.service;
+
+import com.dosemate.dto.AdherenceSeries;
+import com.dosemate.dto.AdherenceTotals;
+import com.dosemate.model.Medicine;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.model.User;
+import com.dosemate.repository.AdherenceDailyRepository;
+import com.dosemate.repository.HistoryRepository;
+import com.dosemate.repository.MedicineRepository;
+import com.dosemate.repository.ReminderRepository;
+import com.dosemate.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rollup;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+public class AdherenceRollupServiceTest {
+
+    @Autowired
+    private AdherenceRollupService rollupService;
+
+    @Autowired
+    private HistoryService historyService;
+
+    @Autowired
+    private MedicineService medicineService;
+
+    @Autowired
+    private AdherenceDailyRepository adherenceDailyRepository;
+
+    @Autowired
+    private HistoryRepository historyRepository;
+
+    @Autowired
+    private ReminderRepository reminderRepository;
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // keeps the real dispatcher from running against the test database
+    @MockBean
+    private ReminderDispatcherService reminderDispatcherService;
+
+    private User user;
+    private Medicine aspirin;
+    private Medicine ibuprofen;
+
+    @BeforeEach
+    void setUp() {
+        historyRepository.deleteAll();
+        adherenceDailyRepository.deleteAll();
+        user = userRepository.findByEmail("rollup@example.com").orElseGet(() -> {
+            User u = new User();
+            u.setEmail("rollup@example.com");
+            u.setPassword("secret");
+            u.setTimeZone("Europe/Berlin");
+            return userRepository.save(u);
+        });
+        aspirin = medicine("Aspirin");
+        ibuprofen = medicine("Ibuprofen");
+    }
+
+    @Test
+    void writersKeepTheRollupInStepWithHistory() {
+        for (int i = 0; i < 3; i++) historyService.recordHistory(reminder(aspirin).getId(), ReminderStatus.TAKEN, "MANUAL", null);
+        historyService.recordHistory(reminder(ibuprofen).getId(), ReminderStatus.TAKEN, "MANUAL", null);
+        List<Long> overdue = List.of(reminder(aspirin).getId(), reminder(ibuprofen).getId());
+        new TransactionTemplate(transactionManager).executeWithoutResult(tx -> {
+            Instant now = Instant.now();
+            historyRepository.insertMissed(overdue, now);
+            rollupService.recordMissed(reminderRepository.findWithMedicineByIdIn(overdue), now);
+        });
+
+        AdherenceTotals all = rollupService.totals(user.getId());
+        assertEquals(6, all.total());
+        assertEquals(4, all.taken());
+        assertEquals(2, all.missed());
+        assertEquals(4, all.latencyCount());
+        assertEquals(3, rollupService.totals(user.getId(), aspirin.getId()).taken());
+
+        Map<String, Object> stats = historyService.getAdherenceStats("rollup@example.com");
+        assertEquals(6L, stats.get("totalReminders"));
+        assertEquals("66.67%", stats.get("adherenceRate"));
+        List<Map<String, Object>> week = historyService.getWeeklyAdherence("rollup@example.com");
+        assertEquals(7, week.size());
+        assertEquals(6L, week.get(6).get("total"));
+    }
+
+    @Test
+    void rebuildMatchesTheIncrementalCounts() {
+        for (int i = 0; i < 4; i++) historyService.recordHistory(reminder(aspirin).getId(), ReminderStatus.TAKEN, "MANUAL", null);
+        historyService.recordHistory(reminder(ibuprofen).getId(), ReminderStatus.MISSED, "MANUAL", null);
+        AdherenceTotals before = rollupService.totals(user.getId());
+
+        adherenceDailyRepository.deleteAll();
+        rollupService.rebuild();
+
+        assertEquals(before, rollupService.totals(user.getId()));
+        assertEquals(2, adherenceDailyRepository.count());
+    }
+
+    @Test
+    void seriesBucketsRollupDaysInOnePass() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(t -> {
+            // 23:30 UTC on Jan 31 is already Feb 1 in Berlin
+            rollupService.record(user, aspirin.getId(), ReminderStatus.TAKEN, Instant.parse("2024-01-31T23:30:00Z"), 60L);
+            rollupService.record(user, aspirin.getId(), ReminderStatus.MISSED, Instant.parse("2024-01-15T08:00:00Z"), null);
+            rollupService.record(user, ibuprofen.getId(), ReminderStatus.TAKEN, Instant.parse("2024-03-10T08:00:00Z"), 120L);
+        });
+
+        AdherenceSeries months = historyService.getAdherenceSeries("rollup@example.com",
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31), AdherenceSeries.Granularity.MONTH, null);
+        assertEquals(List.of(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 1), LocalDate.of(2024, 3, 1)), months.buckets());
+        assertArrayEquals(new long[]{1, 1, 1}, months.total());
+        assertArrayEquals(new long[]{0, 1, 1}, months.taken());
+        assertArrayEquals(new long[]{1, 0, 0}, months.missed());
+        assertArrayEquals(new double[]{0, 60, 120}, months.averageLatencySeconds());
+
+        AdherenceSeries weeks = historyService.getAdherenceSeries("rollup@example.com",
+                LocalDate.of(2024, 1, 31), LocalDate.of(2024, 2, 6), AdherenceSeries.Granularity.WEEK, aspirin.getId());
+        // Wednesday Jan 31 falls in the week of Monday Jan 29
+        assertEquals(List.of(LocalDate.of(2024, 1, 29), LocalDate.of(2024, 2, 5)), weeks.buckets());
+        assertArrayEquals(new long[]{1, 0}, weeks.taken());
+    }
+
+    @Test
+    void statsForAllMedicinesComeFromOneGroupedQuery() {
+        historyService.recordHistory(reminder(aspirin).getId(), ReminderStatus.TAKEN, "MANUAL", null);
+        historyService.recordHistory(reminder(aspirin).getId(), ReminderStatus.MISSED, "MANUAL", null);
+
+        Map<Long, Map<String, Object>> byId = new HashMap<>();
+        for (Map<String, Object> m : historyService.getAdherenceStatsForAllMedicines("rollup@example.com")) {
+            byId.put((Long) m.get("medicineId"), m);
+        }
+        assertEquals("Aspirin", byId.get(aspirin.getId()).get("name"));
+        assertEquals(2L, byId.get(aspirin.getId()).get("totalReminders"));
+        assertEquals("50.00%", byId.get(aspirin.getId()).get("adherenceRate"));
+        // no history yet, still listed
+        assertEquals(0L, byId.get(ibuprofen.getId()).get("totalReminders"));
+    }
+
+    @Test
+    void deletingAMedicineDropsItFromStats() {
+        historyService.recordHistory(reminder(aspirin).getId(), ReminderStatus.TAKEN, "MANUAL", null);
+        historyService.recordHistory(reminder(ibuprofen).getId(), ReminderStatus.MISSED, "MANUAL", null);
+        assertEquals(2, rollupService.totals(user.getId()).total());
+
+        medicineService.deleteMedicine(ibuprofen.getId(), "rollup@example.com");
+
+        AdherenceTotals left = rollupService.totals(user.getId());
+        assertEquals(1, left.total());
+        assertEquals(0, left.missed());
+        assertEquals(0, rollupService.totals(user.getId(), ibuprofen.getId()).total());
+        assertTrue(historyService.getAdherenceStatsForAllMedicines("rollup@example.com").stream()
+                .noneMatch(m -> ibuprofen.getId().equals(m.get("medicineId"))));
+        List<Map<String, Object>> week = historyService.getWeeklyAdherence("rollup@example.com");
+        assertEquals(1L, week.get(6).get("total"));
+    }
+
+    @Test
+    void seriesRejectsInvertedRange() {
+        assertThrows(IllegalArgumentException.class, () -> historyService.getAdherenceSeries("rollup@example.com",
+                LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1), AdherenceSeries.Granularity.DAY, null));
+    }
+
+    private Medicine medicine(String name) {
+        Medicine m = new Medicine();
+        m.setName(name);
+        m.setUser(user);
+        return medicineRepository.save(m);
+    }
+
+    private Reminder reminder(Medicine medicine) {
+        Reminder r = new Reminder();
+        r.setMedicine(medicine);
+        r.setFireAt(Instant.now().minusSeconds(120));
+        r.setStatus(ReminderStatus.TRIGGERED);
+        return reminderRepository.save(r);
+    }
+}
@@ -0,0 +1,162 @@
+package com.dosemate.service;
+
+import com.dosemate.model.Escalation;
+import com.dosemate.model.Medicine;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.model.User;
+import com.dosemate.repository.EscalationRepository;
+import com.dosemate.repository.MedicineRepository;
+import com.dosemate.repository.OutboxEventRepository;
+import com.dosemate.repository.ReminderRepository;
+import com.dosemate.repository.UserRepository;
+import com.dosemate.scheduling.PartitionLeaseManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:escalations;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.escalation.stages=2"
+})
+public class EscalationServiceTest {
+
+    @Autowired
+    private EscalationService escalationService;
+
+    @Autowired
+    private HistoryService historyService;
+
+    @Autowired
+    private EscalationRepository escalationRepository;
+
+    @Autowired
+    private ReminderRepository reminderRepository;
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PartitionLeaseManager leaseManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // keeps the real dispatcher from running against the test database
+    @MockBean
+    private ReminderDispatcherService reminderDispatcherService;
+
+    private TransactionTemplate tx;
+    private User user;
+    private Medicine medicine;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        leaseManager.rebalance();
+        user = userRepository.findByEmail("escalations@example.com").orElseGet(() -> {
+            User u = new User();
+            u.setEmail("escalations@example.com");
+            u.setPassword("secret");
+            return userRepository.save(u);
+        });
+        medicine = new Medicine();
+        medicine.setName("Escalol");
+        medicine.setUser(user);
+        medicine.setEscalateAfterMinutes(60);
+        medicine = medicineRepository.save(medicine);
+    }
+
+    @Test
+    void takingTheDoseCancelsItsEscalation() {
+        Reminder r = firedReminder();
+        int before = escalationService.pending();
+        open(r);
+        assertEquals(before + 1, escalationService.pending());
+        assertEquals(Instant.now().plusSeconds(3600).getEpochSecond(),
+                escalationRepository.findByReminderId(r.getId()).orElseThrow().getDueAt().getEpochSecond(), 5);
+
+        historyService.recordHistory(r.getId(), ReminderStatus.TAKEN, "APP", null);
+
+        assertTrue(escalationRepository.findByReminderId(r.getId()).isEmpty());
+        assertEquals(before, escalationService.pending());
+    }
+
+    @Test
+    void untakenDoseEscalatesInStagesThenStops() {
+        Reminder r = firedReminder();
+        open(r);
+
+        makeDue(r);
+        escalationService.escalate(List.of(r.getId()));
+        Escalation e = escalationRepository.findByReminderId(r.getId()).orElseThrow();
+        assertEquals(1, e.getStage());
+        assertTrue(e.getDueAt().isAfter(Instant.now()));
+
+        makeDue(r);
+        escalationService.escalate(List.of(r.getId()));
+        assertTrue(escalationRepository.findByReminderId(r.getId()).isEmpty());
+        assertEquals(2, alertsFor(r));
+    }
+
+    @Test
+    void doseTakenThroughAnotherNodeIsNotEscalated() {
+        Reminder r = firedReminder();
+        open(r);
+        makeDue(r);
+        r.setStatus(ReminderStatus.TAKEN);
+        reminderRepository.save(r);
+
+        escalationService.escalate(List.of(r.getId()));
+
+        assertTrue(escalationRepository.findByReminderId(r.getId()).isEmpty());
+        assertEquals(0, alertsFor(r));
+    }
+
+    private Reminder firedReminder() {
+        Reminder r = new Reminder();
+        r.setMedicine(medicine);
+        r.setFireAt(Instant.now());
+        r.setScheduledAt(LocalDateTime.ofInstant(r.getFireAt(), ZoneOffset.UTC));
+        r.setStatus(ReminderStatus.TRIGGERED);
+        return reminderRepository.save(r);
+    }
+
+    private void open(Reminder r) {
+        tx.executeWithoutResult(s -> escalationService.open(r, user.getId()));
+    }
+
+    private void makeDue(Reminder r) {
+        Escalation e = escalationRepository.findByReminderId(r.getId()).orElseThrow();
+        e.setDueAt(Instant.now().minusSeconds(1));
+        escalationRepository.save(e);
+    }
+
+    private long alertsFor(Reminder r) {
+        return outboxEventRepository.findAll().stream()
+                .filter(o -> o.getType().equals("DOSE_ESCALATION") && o.getPayload().contains("\"reminderId\":" + r.getId() + ","))
+                .count();
+    }
+}
@@ -0,0 +1,165 @@
+package com.dosemate.service;
+
+import com.dosemate.dto.HistoryCursor;
+import com.dosemate.dto.HistoryPage;
+import com.dosemate.model.History;
+import com.dosemate.model.Medicine;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.model.User;
+import com.dosemate.repository.HistoryRepository;
+import com.dosemate.repository.MedicineRepository;
+import com.dosemate.repository.ReminderRepository;
+import com.dosemate.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:historypages;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+public class HistoryPaginationTest {
+
+    private static final int ROWS = 25;
+    private static final Instant BASE = Instant.parse("2024-03-01T12:00:00Z");
+
+    @Autowired
+    private HistoryService historyService;
+
+    @Autowired
+    private HistoryRepository historyRepository;
+
+    @Autowired
+    private ReminderRepository reminderRepository;
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // keeps the real dispatcher from running against the test database
+    @MockBean
+    private ReminderDispatcherService reminderDispatcherService;
+
+    @BeforeEach
+    void setUp() {
+        historyRepository.deleteAll();
+        User user = user("pages@example.com");
+        User other = user("others@example.com");
+        Reminder reminder = reminder(user);
+        Reminder foreign = reminder(other);
+
+        List<History> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            // pairs of rows share a timestamp so the id has to break the tie
+            ReminderStatus status = i % 5 == 0 ? ReminderStatus.MISSED : ReminderStatus.TAKEN;
+            rows.add(new History(null, reminder, user.getId(), reminder.getMedicine().getId(), status, BASE.plus(i / 2, ChronoUnit.HOURS), "MANUAL", null, null));
+        }
+        rows.add(new History(null, foreign, other.getId(), foreign.getMedicine().getId(), ReminderStatus.MISSED, BASE, "MANUAL", null, null));
+        historyRepository.saveAll(rows);
+    }
+
+    @Test
+    void pagesCoverTheUsersHistoryOnceNewestFirst() {
+        List<History> seen = new ArrayList<>();
+        HistoryCursor cursor = null;
+        int pages = 0;
+        do {
+            HistoryPage page = historyService.getUserHistoryPage("pages@example.com", null, cursor, 7);
+            assertTrue(page.items().size() <= 7);
+            seen.addAll(page.items());
+            cursor = page.next();
+            if (cursor != null) cursor = HistoryCursor.decode(cursor.encode());
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(4, pages);
+        assertEquals(ROWS, seen.size());
+        assertEquals(ROWS, new HashSet<>(seen.stream().map(History::getId).toList()).size());
+        for (int i = 1; i < seen.size(); i++) {
+            History prev = seen.get(i - 1), cur = seen.get(i);
+            int cmp = prev.getRecordedAt().compareTo(cur.getRecordedAt());
+            assertTrue(cmp > 0 || (cmp == 0 && prev.getId() > cur.getId()));
+        }
+    }
+
+    @Test
+    void statusFilterPagesOnlyThatStatus() {
+        List<History> seen = new ArrayList<>();
+        HistoryCursor cursor = null;
+        do {
+            HistoryPage page = historyService.getUserHistoryPage("pages@example.com", ReminderStatus.MISSED, cursor, 2);
+            seen.addAll(page.items());
+            cursor = page.next();
+        } while (cursor != null);
+
+        // rows 0, 5, 10, 15 and 20; the other user's missed dose is not among them
+        assertEquals(5, seen.size());
+        assertTrue(seen.stream().allMatch(h -> h.getStatus() == ReminderStatus.MISSED));
+        assertEquals(BASE.plus(10, ChronoUnit.HOURS), seen.get(0).getRecordedAt());
+        assertEquals(BASE, seen.get(4).getRecordedAt());
+    }
+
+    @Test
+    void dateRangeIsPagedWithinItsBounds() {
+        // hours 2..5 hold rows 4..11, the range end is exclusive
+        LocalDateTime start = LocalDateTime.ofInstant(BASE.plus(2, ChronoUnit.HOURS), ZoneOffset.UTC);
+        LocalDateTime end = LocalDateTime.ofInstant(BASE.plus(6, ChronoUnit.HOURS), ZoneOffset.UTC);
+
+        HistoryPage first = historyService.getUserHistoryByDateRange("pages@example.com", start, end, null, 5);
+        assertEquals(5, first.items().size());
+        HistoryPage second = historyService.getUserHistoryByDateRange("pages@example.com", start, end, first.next(), 5);
+        assertEquals(3, second.items().size());
+        assertNull(second.next());
+        List<Long> firstIds = first.items().stream().map(History::getId).toList();
+        assertFalse(second.items().stream().anyMatch(h -> firstIds.contains(h.getId())));
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode("not-a-cursor"));
+    }
+
+    private User user(String email) {
+        return userRepository.findByEmail(email).orElseGet(() -> {
+            User u = new User();
+            u.setEmail(email);
+            u.setPassword("secret");
+            u.setTimeZone("UTC");
+            return userRepository.save(u);
+        });
+    }
+
+    private Reminder reminder(User user) {
+        Medicine m = new Medicine();
+        m.setName("Pagitol");
+        m.setUser(user);
+        m = medicineRepository.save(m);
+        Reminder r = new Reminder();
+        r.setMedicine(m);
+        r.setFireAt(BASE);
+        r.setStatus(ReminderStatus.TAKEN);
+        return reminderRepository.save(r);
+    }
+}
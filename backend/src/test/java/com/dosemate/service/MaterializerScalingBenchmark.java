@@ -0,0 +1,110 @@
+package com.dosemate.service;
+
+import com.dosemate.model.Medicine;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.User;
+import com.dosemate.scheduling.MedicineSchedules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dose waves per second when the materializer expands {@value #PARTITIONS} partitions on 1, 4 and 16
+ * workers. A wave is one day of doses for {@value #MEDICINES_PER_PARTITION} medicines per partition, four
+ * times a day each, in a mix of time zones; the database is left out so the numbers show how expansion
+ * itself scales with cores. Not part of the test run; start {@link #main} on the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MaterializerScalingBenchmark {
+
+    private static final int PARTITIONS = 16;
+    private static final int MEDICINES_PER_PARTITION = 2_000;
+    private static final String[] ZONES = {"UTC", "Europe/Berlin", "America/New_York", "Asia/Kolkata"};
+
+    @Param({"1", "4", "16"})
+    public int workers;
+
+    private final MedicineSchedules medicineSchedules = new MedicineSchedules();
+    private final Instant now = Instant.parse("2026-03-14T00:00:00Z");
+    private final Instant windowEnd = now.plus(Duration.ofDays(1));
+    private final List<List<Medicine>> partitions = new ArrayList<>();
+    private ExecutorService pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(workers);
+        long id = 0;
+        for (int p = 0; p < PARTITIONS; p++) {
+            List<Medicine> medicines = new ArrayList<>();
+            for (int i = 0; i < MEDICINES_PER_PARTITION; i++) {
+                id++;
+                User user = new User();
+                user.setId(id);
+                user.setTimeZone(ZONES[i % ZONES.length]);
+                Medicine m = new Medicine();
+                m.setId(id);
+                m.setUser(user);
+                m.setActive(true);
+                m.setFrequency("DAILY");
+                m.setReminderTimes(List.of("08:00", "12:00", "18:00", "22:00"));
+                medicines.add(m);
+            }
+            partitions.add(medicines);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public int wave() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (List<Medicine> medicines : partitions) {
+            tasks.add(() -> {
+                int doses = 0;
+                for (Medicine m : medicines) {
+                    m.setNextFireAt(now);
+                    List<Reminder> expanded = ReminderMaterializerService.expandDoses(m, now.minusSeconds(1), windowEnd, medicineSchedules);
+                    doses += expanded.size();
+                }
+                return doses;
+            });
+        }
+        int total = 0;
+        for (Future<Integer> f : pool.invokeAll(tasks)) total += f.get();
+        return total;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MaterializerScalingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
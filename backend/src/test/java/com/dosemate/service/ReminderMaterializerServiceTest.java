@@ -0,0 +1,157 @@
+package com.dosemate.service;
+
+import com.dosemate.model.Medicine;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.model.User;
+import com.dosemate.repository.MedicineRepository;
+import com.dosemate.repository.ReminderRepository;
+import com.dosemate.repository.UserRepository;
+import com.dosemate.scheduling.PartitionLeaseManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:materializer;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.materializer.period-ms=3600000",
+        "app.materializer.chunk-size=7",
+        "app.materializer.budget-ms=0"
+})
+public class ReminderMaterializerServiceTest {
+
+    private static final int MEDICINES = 30;
+
+    @Autowired
+    private ReminderMaterializerService materializer;
+
+    @Autowired
+    private PartitionLeaseManager leaseManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private ReminderRepository reminderRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // keeps the real dispatcher from draining the materialized reminders under the test
+    @MockBean
+    private ReminderDispatcherService reminderDispatcherService;
+
+    private List<Long> medicineIds;
+
+    @BeforeEach
+    void createDueMedicines() {
+        reminderRepository.deleteAll();
+        medicineRepository.deleteAll();
+        leaseManager.rebalance();
+
+        User user = userRepository.findByEmail("materializer@example.com").orElseGet(() -> {
+            User u = new User();
+            u.setEmail("materializer@example.com");
+            u.setPassword("secret");
+            u.setTimeZone("UTC");
+            return userRepository.save(u);
+        });
+        Instant due = Instant.now().plus(2, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.MINUTES);
+        String time = due.toString().substring(11, 16);
+        List<Medicine> medicines = new ArrayList<>();
+        for (int i = 0; i < MEDICINES; i++) {
+            Medicine m = new Medicine();
+            m.setName("Materializol " + i);
+            m.setUser(user);
+            m.setFrequency("DAILY");
+            m.setReminderTimes(new ArrayList<>(List.of(time)));
+            m.setNextFireAt(due);
+            medicines.add(m);
+        }
+        medicineIds = medicineRepository.saveAll(medicines).stream().map(Medicine::getId).toList();
+    }
+
+    @Test
+    void passSpanningSeveralRunsMaterializesEveryMedicineOnce() {
+        // no budget: every run commits one chunk and carries the rest over
+        materializer.checkAndCreateReminders();
+        assertTrue(materializer.isPassInProgress());
+        assertEquals(7, reminderRepository.count());
+
+        int runs = 1;
+        while (materializer.isPassInProgress() && runs < 20) {
+            materializer.checkAndCreateReminders();
+            runs++;
+        }
+
+        assertFalse(materializer.isPassInProgress());
+        assertEquals(5, runs);
+        assertEquals(MEDICINES, reminderRepository.count());
+        Instant later = Instant.now().plus(1, ChronoUnit.HOURS);
+        for (Medicine m : medicineRepository.findAllById(medicineIds)) {
+            assertTrue(m.getNextFireAt().isAfter(later));
+        }
+
+        // a new pass finds nothing left to do
+        materializer.checkAndCreateReminders();
+        assertFalse(materializer.isPassInProgress());
+        assertEquals(MEDICINES, reminderRepository.count());
+    }
+
+    @Test
+    void slotTakenByAConcurrentWriterIsNotInsertedTwice() throws Exception {
+        Medicine first = medicineRepository.findById(medicineIds.get(0)).orElseThrow();
+        Instant due = first.getNextFireAt();
+        CountDownLatch inserted = new CountDownLatch(1);
+        // the other writer's row is not committed yet when the materializer checks the slot
+        Thread writer = new Thread(() -> new TransactionTemplate(transactionManager).executeWithoutResult(tx -> {
+            Reminder r = new Reminder();
+            r.setMedicine(first);
+            r.setScheduledAt(LocalDateTime.ofInstant(due, ZoneOffset.UTC));
+            r.setFireAt(due);
+            r.setStatus(ReminderStatus.PENDING);
+            reminderRepository.saveAndFlush(r);
+            inserted.countDown();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        writer.start();
+        inserted.await();
+        materializer.checkAndCreateReminders();
+        writer.join();
+
+        // the clash only costs the first chunk its batch; every medicine in it still gets its dose once
+        List<Reminder> reminders = reminderRepository.findAll();
+        assertEquals(7, reminders.size());
+        assertEquals(1, reminders.stream().filter(r -> r.getMedicine().getId().equals(first.getId())).count());
+        for (Medicine m : medicineRepository.findAllById(medicineIds.subList(0, 7))) {
+            assertTrue(m.getNextFireAt().isAfter(due));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.dosemate.service;
+
+import com.dosemate.dto.AdherenceTotals;
+import com.dosemate.model.History;
+import com.dosemate.model.Medicine;
+import com.dosemate.model.Reminder;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.model.SchedulerLease;
+import com.dosemate.model.User;
+import com.dosemate.repository.HistoryRepository;
+import com.dosemate.repository.MedicineRepository;
+import com.dosemate.repository.ReminderRepository;
+import com.dosemate.repository.SchedulerLeaseRepository;
+import com.dosemate.repository.UserRepository;
+import com.dosemate.scheduling.PartitionLeaseManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sweeper;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.sweeper.grace-minutes=30",
+        "app.sweeper.chunk-size=2"
+})
+public class ReminderSweeperServiceTest {
+
+    @Autowired
+    private ReminderSweeperService sweeperService;
+
+    @Autowired
+    private AdherenceRollupService rollupService;
+
+    @Autowired
+    private PartitionLeaseManager leaseManager;
+
+    @Autowired
+    private SchedulerLeaseRepository leaseRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private ReminderRepository reminderRepository;
+
+    @Autowired
+    private HistoryRepository historyRepository;
+
+    // keeps the real dispatcher from claiming the seeded reminders
+    @MockBean
+    private ReminderDispatcherService reminderDispatcherService;
+
+    private int seeded;
+
+    @Test
+    void marksExactlyTheOverdueRemindersOfOwnedPartitions() {
+        User owner = user("swept@example.com");
+        User foreign = user("elsewhere@example.com");
+        assertNotEquals(leaseManager.partitionOf(owner.getId()), leaseManager.partitionOf(foreign.getId()));
+
+        // another node holds the foreign user's partition
+        leaseManager.rebalance();
+        leaseRepository.save(new SchedulerLease(leaseManager.partitionOf(foreign.getId()), "other-node",
+                Instant.now().plus(1, ChronoUnit.HOURS)));
+        leaseManager.rebalance();
+        assertTrue(leaseManager.ownsUser(owner.getId()));
+        assertFalse(leaseManager.ownsUser(foreign.getId()));
+
+        Medicine mine = medicine(owner);
+        Medicine theirs = medicine(foreign);
+        Instant now = Instant.now();
+        // five overdue open reminders, swept in chunks of two
+        List<Reminder> overdue = new ArrayList<>();
+        for (int i = 0; i < 3; i++) overdue.add(reminder(mine, now.minus(2, ChronoUnit.HOURS), ReminderStatus.PENDING));
+        for (int i = 0; i < 2; i++) overdue.add(reminder(mine, now.minus(90, ChronoUnit.MINUTES), ReminderStatus.TRIGGERED));
+        Reminder withinGrace = reminder(mine, now.minus(10, ChronoUnit.MINUTES), ReminderStatus.PENDING);
+        Reminder taken = reminder(mine, now.minus(2, ChronoUnit.HOURS), ReminderStatus.TAKEN);
+        Reminder notOwned = reminder(theirs, now.minus(2, ChronoUnit.HOURS), ReminderStatus.PENDING);
+
+        sweeperService.sweepMissedReminders();
+        // a second sweep finds nothing left to mark
+        sweeperService.sweepMissedReminders();
+
+        for (Reminder r : overdue) assertEquals(ReminderStatus.MISSED, status(r));
+        assertEquals(ReminderStatus.PENDING, status(withinGrace));
+        assertEquals(ReminderStatus.TAKEN, status(taken));
+        assertEquals(ReminderStatus.PENDING, status(notOwned));
+
+        List<History> history = historyRepository.findAllForUser(owner.getId());
+        assertEquals(overdue.size(), history.size());
+        Set<Long> historyReminderIds = new HashSet<>();
+        for (History h : history) {
+            assertEquals(ReminderStatus.MISSED, h.getStatus());
+            assertEquals("AUTO", h.getSource());
+            historyReminderIds.add(h.getReminder().getId());
+        }
+        assertEquals(new HashSet<>(overdue.stream().map(Reminder::getId).toList()), historyReminderIds);
+        assertTrue(historyRepository.findAllForUser(foreign.getId()).isEmpty());
+
+        AdherenceTotals totals = rollupService.totals(owner.getId());
+        assertEquals(overdue.size(), totals.total());
+        assertEquals(overdue.size(), totals.missed());
+        assertEquals(0, rollupService.totals(foreign.getId()).total());
+    }
+
+    private ReminderStatus status(Reminder r) {
+        return reminderRepository.findById(r.getId()).orElseThrow().getStatus();
+    }
+
+    private User user(String email) {
+        return userRepository.findByEmail(email).orElseGet(() -> {
+            User u = new User();
+            u.setEmail(email);
+            u.setPassword("secret");
+            u.setTimeZone("UTC");
+            return userRepository.save(u);
+        });
+    }
+
+    private Medicine medicine(User user) {
+        Medicine m = new Medicine();
+        m.setName("Sweepol");
+        m.setUser(user);
+        return medicineRepository.save(m);
+    }
+
+    private Reminder reminder(Medicine medicine, Instant fireAt, ReminderStatus status) {
+        Reminder r = new Reminder();
+        r.setMedicine(medicine);
+        // distinct seconds keep each reminder in its own (medicine, scheduledAt) slot
+        r.setFireAt(fireAt.minusSeconds(seeded++));
+        r.setScheduledAt(LocalDateTime.ofInstant(r.getFireAt(), ZoneOffset.UTC));
+        r.setStatus(status);
+        return reminderRepository.save(r);
+    }
+}
@@ -0,0 +1,70 @@
+package com.dosemate.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nanoseconds to turn one reminder event into a frame: the old per-call ObjectMapper and HashMap
+ * against the shared writers, as JSON and as CBOR. {@link #main} prints the frame sizes first.
+ * Not part of the test run; start {@link #main} on the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventEncodingBenchmark {
+
+    private static final ReminderEvent EVENT = new ReminderEvent(123456L, 789L, "Metformin", "500", "mg",
+            "2026-03-14T08:30", Instant.parse("2026-03-14T07:30:00Z"), "app");
+
+    private final EventEncoder encoder = new EventEncoder(new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+
+    @Benchmark
+    public String mapperPerCall() throws Exception {
+        Map<String, Object> event = new HashMap<>();
+        event.put("reminderId", EVENT.reminderId());
+        event.put("medicineId", EVENT.medicineId());
+        event.put("medicineName", EVENT.medicineName());
+        event.put("dosage", EVENT.dosage());
+        event.put("unit", EVENT.unit());
+        event.put("scheduledAt", EVENT.scheduledAt());
+        return new ObjectMapper().writeValueAsString(event);
+    }
+
+    @Benchmark
+    public Object sharedJson() throws Exception {
+        return encoder.encode(EVENT).text();
+    }
+
+    @Benchmark
+    public Object sharedCbor() throws Exception {
+        return encoder.encode(EVENT).binary();
+    }
+
+    public static void main(String[] args) throws Exception {
+        EventEncodingBenchmark b = new EventEncodingBenchmark();
+        System.out.printf("bytes per event: json %d, cbor %d%n",
+                b.encoder.encode(EVENT).text().getPayloadLength(),
+                b.encoder.encode(EVENT).binary().getPayloadLength());
+        new Runner(new OptionsBuilder().include(EventEncodingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,196 @@
+package com.dosemate.websocket;
+
+import com.dosemate.delivery.DeliveryPipeline;
+import com.dosemate.model.OutboxEvent;
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.repository.OutboxEventRepository;
+import com.dosemate.scheduling.PartitionLeaseManager;
+import com.dosemate.service.ReminderDispatcherService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.outbox.lookback-ms=10000"
+})
+public class OutboxRelayTest {
+
+    @Autowired
+    private EventOutbox eventOutbox;
+
+    @Autowired
+    private OutboxRelay relay;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PartitionLeaseManager leaseManager;
+
+    @MockBean
+    private ReminderWebSocketHandler webSocketHandler;
+
+    @MockBean
+    private DeliveryPipeline deliveryPipeline;
+
+    // keeps the real dispatcher from running against the test database
+    @MockBean
+    private ReminderDispatcherService reminderDispatcherService;
+
+    private TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        relay.relay();
+        clearInvocations(webSocketHandler);
+    }
+
+    @Test
+    void committedEventsAreRelayedOnceInOrder() throws Exception {
+        tx.executeWithoutResult(s -> {
+            for (long id = 1; id <= 3; id++) eventOutbox.append(1L, intake(id));
+        });
+
+        relay.relay();
+        relay.relay();
+
+        InOrder order = inOrder(webSocketHandler);
+        for (long id = 1; id <= 3; id++) {
+            long reminderId = id;
+            order.verify(webSocketHandler).sendAdherence(eq(1L), argThat(e -> e.reminderId() == reminderId));
+        }
+        verify(webSocketHandler, after(300).times(3)).sendAdherence(eq(1L), any());
+        verify(webSocketHandler, times(3)).sendToCaregivers(argThat(e -> e.patientId() == 1L && e.status() == ReminderStatus.TAKEN));
+    }
+
+    @Test
+    void rolledBackEventsAreNeverSent() throws Exception {
+        tx.executeWithoutResult(s -> {
+            eventOutbox.append(2L, intake(99L));
+            s.setRollbackOnly();
+        });
+
+        relay.relay();
+
+        verify(webSocketHandler, after(300).never()).sendAdherence(eq(2L), any());
+    }
+
+    @Test
+    void eventCommittedBehindTheCursorIsStillSent() throws Exception {
+        tx.executeWithoutResult(s -> eventOutbox.append(3L, intake(10L)));
+        relay.relay();
+
+        // a slower transaction stamped its row before the one already relayed and commits only now
+        tx.executeWithoutResult(s -> outboxEventRepository.save(new OutboxEvent(null, 3L, "INTAKE_RECORDED",
+                "{\"reminderId\":11,\"medicineId\":1,\"medicineName\":\"Aspirin\",\"status\":\"TAKEN\"}",
+                Instant.now().minusSeconds(3), null)));
+        relay.relay();
+
+        verify(webSocketHandler).sendAdherence(eq(3L), argThat(e -> e.reminderId() == 10L));
+        verify(webSocketHandler).sendAdherence(eq(3L), argThat(e -> e.reminderId() == 11L));
+    }
+
+    @Test
+    void oneUsersStuckEventDoesNotHoldBackOthers() throws Exception {
+        doThrow(new IllegalStateException("session closed")).when(webSocketHandler).sendAdherence(eq(5L), any());
+        tx.executeWithoutResult(s -> {
+            eventOutbox.append(5L, intake(50L));
+            eventOutbox.append(6L, intake(60L));
+            eventOutbox.append(5L, intake(51L));
+        });
+        relay.relay();
+
+        verify(webSocketHandler, after(300)).sendAdherence(eq(6L), argThat(e -> e.reminderId() == 60L));
+        // user 5's later event waits behind the failed one
+        verify(webSocketHandler, never()).sendAdherence(eq(5L), argThat(e -> e.reminderId() == 51L));
+
+        doNothing().when(webSocketHandler).sendAdherence(eq(5L), any());
+        clearInvocations(webSocketHandler);
+        relay.relay();
+
+        InOrder order = inOrder(webSocketHandler);
+        order.verify(webSocketHandler).sendAdherence(eq(5L), argThat(e -> e.reminderId() == 50L));
+        order.verify(webSocketHandler).sendAdherence(eq(5L), argThat(e -> e.reminderId() == 51L));
+        verify(webSocketHandler, never()).sendAdherence(eq(6L), any());
+    }
+
+    @Test
+    void fullExternalLaneIsRetriedWithoutResendingInApp() throws Exception {
+        leaseManager.rebalance();
+        when(deliveryPipeline.submit(eq(DeliveryPipeline.WEBSOCKET), eq(7L), any())).thenReturn(true);
+        when(deliveryPipeline.submit(eq("email"), eq(7L), any())).thenReturn(false, true);
+        tx.executeWithoutResult(s -> eventOutbox.append(7L, new ReminderEvent(70L, 1L, "Aspirin", "1", "tablet",
+                "2026-01-01T08:00", Instant.parse("2026-01-01T08:00:00Z"), "email")));
+
+        relay.relay();
+        relay.relay();
+
+        verify(deliveryPipeline, after(300).times(2)).submit(eq("email"), eq(7L), any());
+        verify(deliveryPipeline, times(1)).submit(eq(DeliveryPipeline.WEBSOCKET), eq(7L), any());
+    }
+
+    @Test
+    void reminderCommittedWhileAnotherNodeOwnedTheUserIsSentByTheNextOwner() throws Exception {
+        when(deliveryPipeline.submit(any(), eq(8L), any())).thenReturn(true);
+        // this node does not own the user when the row is first relayed, e.g. while its partition changes hands
+        leaseManager.releaseAll();
+        tx.executeWithoutResult(s -> eventOutbox.append(8L, new ReminderEvent(80L, 1L, "Aspirin", "1", "tablet",
+                "2026-01-01T08:00", Instant.parse("2026-01-01T08:00:00Z"), "sms")));
+        relay.relay();
+
+        verify(deliveryPipeline, after(300)).submit(eq(DeliveryPipeline.WEBSOCKET), eq(8L), any());
+        verify(deliveryPipeline, never()).submit(eq("sms"), eq(8L), any());
+
+        // the cursor has moved past the row, but it is still pending for its new owner
+        leaseManager.rebalance();
+        relay.relay();
+        relay.relay();
+
+        verify(deliveryPipeline, times(1)).submit(eq("sms"), eq(8L), any());
+        verify(deliveryPipeline, times(1)).submit(eq(DeliveryPipeline.WEBSOCKET), eq(8L), any());
+        assertTrue(outboxEventRepository.findAll().stream()
+                .filter(e -> e.getUserId() == 8L)
+                .allMatch(e -> e.getPendingChannel() == null));
+    }
+
+    @Test
+    void appendRequiresTheProducingTransaction() {
+        assertThrows(IllegalTransactionStateException.class, () -> eventOutbox.append(4L, intake(1L)));
+    }
+
+    private static IntakeEvent intake(long reminderId) {
+        return new IntakeEvent(reminderId, 1L, "Aspirin", ReminderStatus.TAKEN, Instant.now(), 30L);
+    }
+}
@@ -0,0 +1,241 @@
+package com.dosemate.websocket;
+
+import com.dosemate.model.ReminderStatus;
+import com.dosemate.repository.CaregiverRelationRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReminderWebSocketHandlerTest {
+
+    private static final int REPLAY_BUFFER = 4;
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserSessionRegistry registry = new UserSessionRegistry(REPLAY_BUFFER, 30);
+    // configured like the application's mapper: java.time values as ISO strings
+    private final EventEncoder encoder = new EventEncoder(new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+    private final CaregiverIndex caregiverIndex = new CaregiverIndex(mock(CaregiverRelationRepository.class));
+    private final ReminderWebSocketHandler handler = new ReminderWebSocketHandler(registry, encoder, caregiverIndex, meterRegistry, 2, 8, "DISCONNECT");
+
+    @AfterEach
+    void stopWriters() {
+        handler.shutdown();
+    }
+
+    @Test
+    void eventsOnlyReachTheOwningUsersSessions() throws Exception {
+        WebSocketSession aliceTab1 = connect(1L);
+        WebSocketSession aliceTab2 = connect(1L);
+        WebSocketSession bob = connect(2L);
+
+        handler.sendReminder(1L, reminder(10L));
+
+        assertEquals(List.of("HELLO", "REMINDER"), types(aliceTab1, 2));
+        assertEquals(List.of("HELLO", "REMINDER"), types(aliceTab2, 2));
+        assertEquals(List.of("HELLO"), types(bob, 1));
+        verify(bob, after(200).times(1)).sendMessage(any());
+    }
+
+    @Test
+    void closedSessionsStopReceivingAndIdleStreamsArePruned() throws Exception {
+        WebSocketSession session = connect(3L);
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        assertTrue(registry.sessionsOf(3L).isEmpty());
+
+        handler.sendAdherence(3L, new IntakeEvent(11L, 1L, "Aspirin", ReminderStatus.TAKEN, Instant.now(), 4L));
+        verify(session, after(200).times(1)).sendMessage(any());
+
+        // kept for resuming clients until the retention period has passed
+        registry.pruneIdleStreams(System.currentTimeMillis());
+        assertEquals(1, registry.userCount());
+        registry.pruneIdleStreams(System.currentTimeMillis() + Duration.ofMinutes(31).toMillis());
+        assertEquals(0, registry.userCount());
+    }
+
+    @Test
+    void unauthenticatedSessionsAreClosed() throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getAttributes()).thenReturn(new HashMap<>());
+
+        handler.afterConnectionEstablished(session);
+
+        verify(session).close(CloseStatus.POLICY_VIOLATION);
+        assertEquals(0, registry.userCount());
+    }
+
+    @Test
+    void slowSessionIsEvictedWithoutBlockingTheSender() throws Exception {
+        CountDownLatch network = new CountDownLatch(1);
+        WebSocketSession slow = session(4L, null, null);
+        doAnswer(inv -> {
+            network.await();
+            return null;
+        }).when(slow).sendMessage(any());
+        handler.afterConnectionEstablished(slow);
+        WebSocketSession fast = connect(5L);
+
+        // HELLO is stuck in flight, eight frames fill the queue and the ninth overflows it
+        long start = System.nanoTime();
+        for (int i = 0; i < 9; i++) {
+            handler.sendReminder(4L, reminder(i));
+            handler.sendReminder(5L, reminder(i));
+        }
+        assertTrue(System.nanoTime() - start < 500_000_000L, "senders must not wait on the slow client");
+
+        assertEquals(10, types(fast, 10).size());
+        assertTrue(registry.sessionsOf(4L).isEmpty());
+        assertEquals(1.0, meterRegistry.counter("dosemate.websocket.sessions.evicted").count());
+
+        network.countDown();
+        verify(slow, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    void reconnectReplaysOnlyTheMissedEvents() throws Exception {
+        WebSocketSession first = connect(7L);
+        handler.sendReminder(7L, reminder(1L));
+        handler.sendReminder(7L, reminder(2L));
+        List<JsonNode> seen = frames(first, 3);
+        long lastSeq = seen.get(2).get("seq").asLong();
+        assertEquals(seen.get(0).get("seq").asLong() + 2, lastSeq);
+        handler.afterConnectionClosed(first, CloseStatus.GOING_AWAY);
+
+        handler.sendReminder(7L, reminder(3L));
+        handler.sendReminder(7L, reminder(4L));
+
+        WebSocketSession resumed = connect(7L, lastSeq);
+        List<JsonNode> replayed = frames(resumed, 2);
+        assertEquals(lastSeq + 1, replayed.get(0).get("seq").asLong());
+        assertEquals(3L, replayed.get(0).get("reminderId").asLong());
+        assertEquals(lastSeq + 2, replayed.get(1).get("seq").asLong());
+        assertEquals(4L, replayed.get(1).get("reminderId").asLong());
+        verify(resumed, after(200).times(2)).sendMessage(any());
+    }
+
+    @Test
+    void reconnectAfterTheBufferRolledOverGetsResync() throws Exception {
+        WebSocketSession first = connect(8L);
+        long lastSeq = frames(first, 1).get(0).get("seq").asLong();
+        handler.afterConnectionClosed(first, CloseStatus.GOING_AWAY);
+        for (int i = 0; i < REPLAY_BUFFER + 1; i++) handler.sendReminder(8L, reminder(i));
+
+        WebSocketSession resumed = connect(8L, lastSeq);
+        JsonNode resync = frames(resumed, 1).get(0);
+        assertEquals("RESYNC", resync.get("type").asText());
+        assertEquals(lastSeq + REPLAY_BUFFER + 1, resync.get("seq").asLong());
+
+        // a lastSeq from before a restart is older than anything this stream numbered
+        WebSocketSession stale = connect(8L, 12L);
+        assertEquals(List.of("RESYNC"), types(stale, 1));
+    }
+
+    @Test
+    void approvedCaregiversFollowTheirPatientsDoses() throws Exception {
+        WebSocketSession caregiver = connect(20L);
+        WebSocketSession stranger = connect(21L);
+        caregiverIndex.link(10L, 20L);
+
+        handler.sendToCaregivers(new PatientDoseEvent(10L, 5L, 1L, "Aspirin", ReminderStatus.TAKEN, Instant.now()));
+        JsonNode dose = frames(caregiver, 2).get(1);
+        assertEquals("PATIENT_DOSE", dose.get("type").asText());
+        assertEquals(10L, dose.get("patientId").asLong());
+        assertEquals("TAKEN", dose.get("status").asText());
+
+        caregiverIndex.unlink(10L, 20L);
+        handler.sendToCaregivers(new PatientDoseEvent(10L, 6L, 1L, "Aspirin", ReminderStatus.MISSED, Instant.now()));
+        verify(caregiver, after(200).times(2)).sendMessage(any());
+        verify(stranger, after(200).times(1)).sendMessage(any());
+    }
+
+    @Test
+    void cborSubprotocolGetsBinaryFramesOfTheSameEvent() throws Exception {
+        WebSocketSession json = connect(6L);
+        WebSocketSession cbor = session(6L, EventEncoder.CBOR_PROTOCOL, null);
+        handler.afterConnectionEstablished(cbor);
+
+        handler.sendReminder(6L, reminder(42L));
+
+        ArgumentCaptor<TextMessage> text = ArgumentCaptor.forClass(TextMessage.class);
+        ArgumentCaptor<BinaryMessage> binary = ArgumentCaptor.forClass(BinaryMessage.class);
+        verify(json, timeout(1000).times(2)).sendMessage(text.capture());
+        verify(cbor, timeout(1000).times(2)).sendMessage(binary.capture());
+
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        JsonNode fromText = jsonMapper.readTree(text.getAllValues().get(1).getPayload());
+        JsonNode fromBinary = cborMapper.readTree(binary.getAllValues().get(1).getPayload().array());
+        assertEquals("REMINDER", fromText.get("type").asText());
+        assertEquals(42L, fromText.get("reminderId").asLong());
+        assertEquals(fromText, fromBinary);
+    }
+
+    private static ReminderEvent reminder(long id) {
+        return new ReminderEvent(id, 1L, "Aspirin", "1", "tablet", "2026-01-01T08:00", Instant.parse("2026-01-01T08:00:00Z"), "app");
+    }
+
+    // waits for the session to have been sent n text frames and parses them
+    private List<JsonNode> frames(WebSocketSession session, int n) throws Exception {
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, timeout(1000).times(n)).sendMessage(sent.capture());
+        List<JsonNode> frames = new ArrayList<>();
+        for (TextMessage m : sent.getAllValues()) frames.add(jsonMapper.readTree(m.getPayload()));
+        return frames;
+    }
+
+    private List<String> types(WebSocketSession session, int n) throws Exception {
+        List<String> types = new ArrayList<>();
+        for (JsonNode frame : frames(session, n)) types.add(frame.get("type").asText());
+        return types;
+    }
+
+    private WebSocketSession connect(Long userId) throws Exception {
+        return connect(userId, null);
+    }
+
+    private WebSocketSession connect(Long userId, Long lastSeq) throws Exception {
+        WebSocketSession session = session(userId, null, lastSeq);
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private static WebSocketSession session(Long userId, String protocol, Long lastSeq) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        attributes.put(JwtHandshakeInterceptor.USER_ID, userId);
+        if (lastSeq != null) attributes.put(JwtHandshakeInterceptor.LAST_SEQ, lastSeq);
+        when(session.getAttributes()).thenReturn(attributes);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAcceptedProtocol()).thenReturn(protocol);
+        when(session.getId()).thenReturn("s" + userId + "-" + System.identityHashCode(session));
+        return session;
+    }
+}
@@ -0,0 +1,50 @@
+// Resumable event stream over /ws/reminders or /ws/adherence.
+// Every event carries a per-user sequence number; on reconnect the last one seen is sent back as
+// lastSeq and the server replays only what was missed. onResync is called when it cannot
+// (the missed events are no longer buffered), and the page should reload its data then.
+export function openEventStream(path, { onEvent, onResync }) {
+  let lastSeq = null
+  let ws = null
+  let closed = false
+  let retryMs = 1000
+  let retryTimer = null
+
+  const connect = () => {
+    const params = new URLSearchParams({ token: localStorage.getItem('token') || '' })
+    if (lastSeq != null) params.set('lastSeq', lastSeq)
+    ws = new WebSocket(`ws://localhost:8080${path}?${params}`)
+    ws.onopen = () => {
+      retryMs = 1000
+    }
+    ws.onmessage = (ev) => {
+      let payload
+      try {
+        payload = JSON.parse(ev.data)
+      } catch (e) {
+        console.error('WS parse error', e)
+        return
+      }
+      if (typeof payload?.seq === 'number') lastSeq = payload.seq
+      if (payload?.type === 'HELLO') return
+      if (payload?.type === 'RESYNC') {
+        onResync?.()
+        return
+      }
+      onEvent?.(payload)
+    }
+    ws.onerror = (err) => console.error('WS error', err)
+    // reconnect with backoff; a deploy or network blip only costs the replay of missed events
+    ws.onclose = () => {
+      if (closed) return
+      retryTimer = setTimeout(connect, retryMs)
+      retryMs = Math.min(retryMs * 2, 30000)
+    }
+  }
+
+  connect()
+  return () => {
+    closed = true
+    clearTimeout(retryTimer)
+    if (ws) ws.close()
+  }
+}
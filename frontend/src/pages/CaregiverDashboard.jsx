@@ -1,6 +1,7 @@
-import React, { useEffect, useState, useContext } from 'react'
+import React, { useEffect, useState, useContext, useRef } from 'react'
 import { AuthContext } from '../context/AuthContext'
 import { api } from '../api/axios'
+import { openEventStream } from '../api/eventStream'
 import { AlertCircle, Users, Heart, TrendingUp } from 'lucide-react'
 import ChatWidget from '../components/ChatWidget'
 import { ResponsiveContainer, BarChart, Bar, XAxis, YAxis, CartesianGrid, Tooltip, Legend } from 'recharts'
@@ -15,12 +16,61 @@ export default function CaregiverDashboard() {
   const [patientReminders, setPatientReminders] = useState([])
   const [patientHistory, setPatientHistory] = useState([])
   const [pendingInvites, setPendingInvites] = useState([])
+  const [escalations, setEscalations] = useState([])
+  const selectedPatientRef = useRef(null)
+
+  useEffect(() => {
+    selectedPatientRef.current = selectedPatient
+  }, [selectedPatient])
 
   useEffect(() => {
     fetchPatients()
     fetchPendingInvites()
+
+    // Live dose events of approved patients; the server fans them out, so nothing here polls
+    return openEventStream('/ws/adherence', {
+      onEvent: (payload) => {
+        if (payload?.type === 'PATIENT_DOSE') applyPatientDose(payload)
+        if (payload?.type === 'DOSE_ESCALATION') applyEscalation(payload)
+      },
+      onResync: () => {
+        fetchPatients()
+        if (selectedPatientRef.current) viewPatientDetails(selectedPatientRef.current)
+      }
+    })
   }, [])
 
+  // Patches the patient list and the open patient's details in place from one dose event
+  const applyPatientDose = (event) => {
+    if (event.status === 'TAKEN') setEscalations((prev) => prev.filter((e) => e.reminderId !== event.reminderId))
+    setPatients((prev) => prev.map((p) => {
+      if (p.patientId !== event.patientId) return p
+      return {
+        ...p,
+        missedRemindersCount: (p.missedRemindersCount || 0) + (event.status === 'MISSED' ? 1 : 0),
+        lastActivity: event.at
+      }
+    }))
+    if (selectedPatientRef.current !== event.patientId || event.status === 'TRIGGERED') return
+    setPatientReminders((prev) => prev.filter((r) => r.id !== event.reminderId))
+    setPatientHistory((prev) => [
+      {
+        id: `live-${event.seq}`,
+        status: event.status,
+        timestamp: event.at,
+        reminder: { medicine: { name: event.medicineName } }
+      },
+      ...prev
+    ])
+  }
+
+  // One alert per untaken dose; a later stage replaces the earlier one, and taking the dose clears it
+  const applyEscalation = (event) => {
+    setEscalations((prev) => [event, ...prev.filter((e) => e.reminderId !== event.reminderId)])
+  }
+
+  const patientName = (patientId) => patients.find((p) => p.patientId === patientId)?.patientName || 'Your patient'
+
   const fetchPatients = async () => {
     setLoading(true)
     try {
@@ -113,6 +163,18 @@ export default function CaregiverDashboard() {
 
           {error && <div className="mb-4 text-red-600 bg-red-50 p-4 rounded-lg">{error}</div>}
 
+          {escalations.map((e) => (
+            <div key={e.reminderId} className="mb-4 flex items-center justify-between text-amber-800 bg-amber-50 p-4 rounded-lg">
+              <span>
+                {patientName(e.patientId)} has not taken {e.medicineName || 'a dose'} due at {new Date(e.fireAt).toLocaleTimeString()}
+                {e.stage > 1 ? ` (alert ${e.stage})` : ''}
+              </span>
+              <button className="text-sm underline" onClick={() => setEscalations((prev) => prev.filter((x) => x.reminderId !== e.reminderId))}>
+                Dismiss
+              </button>
+            </div>
+          ))}
+
           <div className="grid grid-cols-1 lg:grid-cols-3 gap-6">
             {/* Pending Invites (caregiver) */}
             <div className="lg:col-span-1 card">
@@ -2,6 +2,7 @@ import React, { useEffect, useState, useContext } from 'react'
 import { useNavigate } from 'react-router-dom'
 import { AuthContext } from '../context/AuthContext'
 import { api } from '../api/axios'
+import { openEventStream } from '../api/eventStream'
 import { LineChart, Line, BarChart, Bar, XAxis, YAxis, CartesianGrid, Tooltip, Legend, ResponsiveContainer, PieChart, Pie, Cell } from 'recharts'
 import { Pill, AlertCircle, CheckCircle, Clock, TrendingUp } from 'lucide-react'
 // Layout is provided at route-level in App.jsx; remove page-level wrapper
@@ -19,15 +20,12 @@ export default function Dashboard() {
 
   useEffect(() => {
     fetchDashboardData()
-    // Real-time updates via WebSocket
-    const ws = new WebSocket('ws://localhost:8080/ws/adherence')
-    ws.onopen = () => console.log('WebSocket connected')
-    ws.onmessage = (event) => {
-      try {
-        const payload = JSON.parse(event.data)
+    // Real-time updates via WebSocket; resumes after reconnects and reloads only on RESYNC
+    return openEventStream('/ws/adherence', {
+      onEvent: (payload) => {
         console.log('Real-time update:', payload)
         // If it's a reminder event, refresh pending reminders and show a browser notification
-        if (payload?.medicineName || payload?.type === 'REMINDER') {
+        if (payload?.type === 'REMINDER') {
           fetchPendingReminders()
           if (window.Notification && Notification.permission === 'granted') {
             const title = payload.medicineName || 'Medication Reminder'
@@ -38,12 +36,9 @@ export default function Dashboard() {
         // Adherence updates: refresh stats/weekly chart
         fetchStats()
         fetchWeeklyData()
-      } catch (e) {
-        console.log('WS message parse error', e)
-      }
-    }
-    ws.onerror = (error) => console.error('WebSocket error:', error)
-    return () => ws.close()
+      },
+      onResync: () => fetchDashboardData()
+    })
   }, [])
 
   const fetchDashboardData = async () => {
@@ -100,10 +95,10 @@ export default function Dashboard() {
 
   const fetchMissedReminders = async () => {
     try {
-      const response = await api.get('/history')
-      const historyData = Array.isArray(response.data) ? response.data : []
-      const missed = historyData.filter(h => String(h.status).toUpperCase() === 'MISSED')
-      const items = missed.map(h => ({ id: h.reminder?.id || h.reminderId, medicineName: h.reminder?.medicine?.name || h.medicineName, when: h.timestamp }))
+      // the server filters and pages; the newest six missed doses are all the card shows
+      const response = await api.get('/history', { params: { status: 'MISSED', limit: 6 } })
+      const missed = Array.isArray(response.data) ? response.data : []
+      const items = missed.map(h => ({ id: h.reminder?.id || h.reminderId, medicineName: h.reminder?.medicine?.name || h.medicineName, when: h.recordedAt }))
       setMissedReminders(items)
     } catch (error) {
       console.error('Error fetching missed reminders:', error)
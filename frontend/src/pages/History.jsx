@@ -10,7 +10,8 @@ import {
   TableRow,
   Paper,
   Card,
-  Grid
+  Grid,
+  Button
 } from '@mui/material'
 // Layout is provided at route-level in App.jsx; remove page-level wrapper
 import api from '../api/axios'
@@ -19,19 +20,19 @@ const History = () => {
   const [history, setHistory] = useState([])
   const [stats, setStats] = useState({ taken: 0, missed: 0 })
   const [loading, setLoading] = useState(true)
+  const [nextCursor, setNextCursor] = useState(null)
 
   useEffect(() => {
     fetchHistory()
+    fetchStats()
   }, [])
 
-  const fetchHistory = async () => {
+  // The list is paged newest first; the server hands back the next page's cursor in X-Next-Cursor
+  const fetchHistory = async (cursor) => {
     try {
-      const response = await api.get('/history')
-      setHistory(response.data)
-
-      const taken = response.data.filter((h) => h.status === 'TAKEN').length
-      const missed = response.data.filter((h) => h.status === 'MISSED').length
-      setStats({ taken, missed })
+      const response = await api.get('/history', { params: cursor ? { cursor } : {} })
+      setHistory((prev) => (cursor ? [...prev, ...response.data] : response.data))
+      setNextCursor(response.headers['x-next-cursor'] || null)
     } catch (err) {
       console.error('Failed to fetch history:', err)
     } finally {
@@ -39,6 +40,16 @@ const History = () => {
     }
   }
 
+  // Totals come from the stats endpoint, the list only holds the pages loaded so far
+  const fetchStats = async () => {
+    try {
+      const response = await api.get('/history/stats')
+      setStats({ taken: response.data.taken || 0, missed: response.data.missed || 0 })
+    } catch (err) {
+      console.error('Failed to fetch history stats:', err)
+    }
+  }
+
   return (
     <>
       <Typography variant="h5" gutterBottom sx={{ mb: 3 }}>
@@ -90,6 +101,14 @@ const History = () => {
           </TableBody>
         </Table>
       </TableContainer>
+
+      {nextCursor && (
+        <Box sx={{ display: 'flex', justifyContent: 'center', mt: 2 }}>
+          <Button variant="outlined" onClick={() => fetchHistory(nextCursor)}>
+            Load more
+          </Button>
+        </Box>
+      )}
     </>
   )
 }
@@ -3,6 +3,7 @@ import React, { useEffect, useState, useRef } from 'react'
 import Card from '../components/Card'
 import Button from '../components/Button'
 import { api } from '../api/axios'
+import { openEventStream } from '../api/eventStream'
 
 export default function Reminders() {
   const [pending, setPending] = useState([])
@@ -18,27 +19,21 @@ export default function Reminders() {
   useEffect(() => {
     fetchAll()
 
-    // WebSocket for reminder events
-    const ws = new WebSocket('ws://localhost:8080/ws/reminders')
-    ws.onopen = () => console.log('Reminders WS connected')
-    ws.onmessage = (ev) => {
-      try {
-        const payload = JSON.parse(ev.data)
+    // WebSocket for reminder events; resumes after reconnects and reloads only on RESYNC
+    return openEventStream('/ws/reminders', {
+      onEvent: (payload) => {
         console.log('Reminder event:', payload)
         // Refresh lists
         fetchAll()
-        // Prefer in-app single notification flow
+        // Prefer in-app single notification flow; intake events only refresh the lists
         try {
-          handleIncomingReminder(payload)
+          if (payload?.type === 'REMINDER') handleIncomingReminder(payload)
         } catch (e) {
           console.error('Reminder handling failed', e)
         }
-      } catch (e) {
-        console.error('WS parse error', e)
-      }
-    }
-    ws.onerror = (err) => console.error('WS error', err)
-    return () => ws.close()
+      },
+      onResync: () => fetchAll()
+    })
   }, [])
 
   // Request permission for notifications
@@ -6,8 +6,30 @@ import { Calendar, Download, Filter } from 'lucide-react'
 import Card from '../components/Card'
 import Button from '../components/Button'
 
+const TREND_RANGES = {
+  week: { days: 7, granularity: 'day' },
+  month: { days: 30, granularity: 'day' },
+  quarter: { days: 90, granularity: 'week' },
+  year: { days: 365, granularity: 'month' }
+}
+
+// Local calendar day offset from today, as YYYY-MM-DD
+const isoDay = (offset) => {
+  const d = new Date()
+  d.setDate(d.getDate() + offset)
+  return `${d.getFullYear()}-${String(d.getMonth() + 1).padStart(2, '0')}-${String(d.getDate()).padStart(2, '0')}`
+}
+
+// The series comes as parallel arrays; the charts want one object per bucket
+const toTrendRows = (series) => (series?.buckets || []).map((date, i) => ({
+  date,
+  total: series.total[i],
+  taken: series.taken[i],
+  percentage: series.total[i] > 0 ? Math.floor(series.taken[i] * 100 / series.total[i]) : 0
+}))
+
 export default function Reports() {
-  const [timeRange, setTimeRange] = useState('week') // week, month, all
+  const [timeRange, setTimeRange] = useState('week') // week, month, quarter, year
   const [selectedMedicine, setSelectedMedicine] = useState(null)
   const [medicines, setMedicines] = useState([])
   const [adherenceData, setAdherenceData] = useState([])
@@ -22,24 +44,25 @@ export default function Reports() {
   const fetchReportData = async () => {
     try {
       setLoading(true)
-      const [medsRes, statsRes] = await Promise.all([
-        api.get('/medicines'),
+      // One call returns every medicine with its stats
+      const [medStatsRes, statsRes] = await Promise.all([
+        api.get('/history/stats/medicines'),
         api.get('/history/stats')
       ])
-      
-      setMedicines(medsRes.data)
+
+      const rows = medStatsRes.data || []
+      setMedicines(rows.map((r) => ({ id: r.medicineId, name: r.name })))
       setOverallStats(statsRes.data)
-      // Fetch per-medicine stats
-      const meds = medsRes.data || []
-      const statsCalls = meds.map((m) => api.get(`/history/stats/medicine/${m.id}`).then(r => ({ id: m.id, data: r.data })).catch(() => ({ id: m.id, data: null })))
-      const statsResults = await Promise.all(statsCalls)
       const statsMap = {}
-      statsResults.forEach((r) => { if (r?.id) statsMap[r.id] = r.data })
+      rows.forEach((r) => { statsMap[r.medicineId] = r })
       setMedicineStats(statsMap)
 
-      // Fetch history for adherence trends
-      const historyRes = await api.get('/history/stats/weekly')
-      setAdherenceData(historyRes.data)
+      // Adherence trend over the selected range, bucketed server-side
+      const { days, granularity } = TREND_RANGES[timeRange] || TREND_RANGES.week
+      const params = { from: isoDay(-(days - 1)), to: isoDay(0), granularity }
+      if (selectedMedicine) params.medicineId = selectedMedicine
+      const seriesRes = await api.get('/history/stats/series', { params })
+      setAdherenceData(toTrendRows(seriesRes.data))
     } catch (error) {
       console.error('Error fetching report data:', error)
     } finally {
@@ -72,7 +95,7 @@ export default function Reports() {
     const rows = [headers.join(',')]
     medicines.forEach((m) => {
       const s = medicineStats[m.id] || {}
-      const total = s.total || 0
+      const total = s.totalReminders || 0
       const taken = s.taken || 0
       const missed = s.missed || 0
       const rate = s.adherenceRate || ''
@@ -111,9 +134,10 @@ export default function Reports() {
                   onChange={(e) => setTimeRange(e.target.value)}
                   className="px-4 py-2 border border-gray-300 rounded-lg focus:outline-none focus:ring-2 focus:ring-blue-500"
                 >
-                  <option value="week">This Week</option>
-                  <option value="month">This Month</option>
-                  <option value="all">All Time</option>
+                  <option value="week">Last 7 Days</option>
+                  <option value="month">Last 30 Days</option>
+                  <option value="quarter">Last 90 Days</option>
+                  <option value="year">Last Year</option>
                 </select>
 
                 <select
@@ -162,7 +186,7 @@ export default function Reports() {
           <div className="grid grid-cols-1 lg:grid-cols-2 gap-8">
             {/* Adherence Trend */}
             <div className="bg-white rounded-lg shadow p-6">
-              <h2 className="text-xl font-bold text-gray-900 mb-4">Weekly Trend</h2>
+              <h2 className="text-xl font-bold text-gray-900 mb-4">Adherence Trend</h2>
               <ResponsiveContainer width="100%" height={300}>
                 <BarChart data={adherenceData}>
                   <CartesianGrid strokeDasharray="3 3" />
@@ -178,7 +202,7 @@ export default function Reports() {
 
             {/* Performance Distribution */}
             <div className="bg-white rounded-lg shadow p-6">
-              <h2 className="text-xl font-bold text-gray-900 mb-4">Daily Performance</h2>
+              <h2 className="text-xl font-bold text-gray-900 mb-4">Performance</h2>
               <ResponsiveContainer width="100%" height={300}>
                 <LineChart data={adherenceData}>
                   <CartesianGrid strokeDasharray="3 3" />
@@ -216,7 +240,7 @@ export default function Reports() {
                         const taken = s.taken || 0
                         const missed = s.missed || 0
                         // Calculate total from taken + missed if not provided or is 0
-                        const total = (s.total && s.total > 0) ? s.total : (taken + missed)
+                        const total = (s.totalReminders && s.totalReminders > 0) ? s.totalReminders : (taken + missed)
                         const adherenceRate = s.adherenceRate || 'N/A'
                         const rateNum = typeof adherenceRate === 'string' ? parseInt(adherenceRate) : adherenceRate
                         // Alternate BEIGE and PINK rows